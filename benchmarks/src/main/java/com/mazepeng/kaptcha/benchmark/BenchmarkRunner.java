@@ -0,0 +1,50 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 基准测试入口
+ * <p>
+ * 依次以 1 个线程、4 个线程和全部 CPU 核数运行所有基准，并开启 GC 分析器以报告分配速率（gc.alloc.rate.norm）。
+ * 可选参数为基准名称的正则表达式，例如：
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar Interferer
+ * </pre>
+ * 需要完全控制 JMH 参数时，也可以直接使用 JMH 自带的入口：
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar org.openjdk.jmh.Main -t 8 -prof gc
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+
+        Set<Integer> threadCounts = new LinkedHashSet<>();
+        threadCounts.add(1);
+        threadCounts.add(4);
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("benchmark-" + threads + "t.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
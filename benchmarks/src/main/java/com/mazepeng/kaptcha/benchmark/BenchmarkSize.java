@@ -0,0 +1,23 @@
+package com.mazepeng.kaptcha.benchmark;
+
+/**
+ * 解析形如 "120x40" 的图片尺寸参数
+ */
+final class BenchmarkSize {
+
+    final int width;
+    final int height;
+
+    private BenchmarkSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    static BenchmarkSize parse(String size) {
+        int idx = size.indexOf('x');
+        if (idx <= 0) {
+            throw new IllegalArgumentException("Size must look like 120x40: " + size);
+        }
+        return new BenchmarkSize(Integer.parseInt(size.substring(0, idx)), Integer.parseInt(size.substring(idx + 1)));
+    }
+}
@@ -0,0 +1,100 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import com.mazepeng.kaptcha.Captcha;
+import com.mazepeng.kaptcha.CaptchaProducer;
+import com.mazepeng.kaptcha.RenderBackend;
+import com.mazepeng.kaptcha.api.IGenerator;
+import com.mazepeng.kaptcha.generator.ArithmeticGenerator;
+import com.mazepeng.kaptcha.generator.CharGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的验证码构造（内容生成 + 背景 + 干扰 + 文字 + 缩放）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CaptchaBenchmark {
+
+    @Param({"120x40", "240x80", "360x120"})
+    public String size;
+
+    @Param({"char", "arithmetic"})
+    public String generator;
+
+    // 固定种子的工作负载在这些种子之间循环，每次测量渲染的内容完全相同
+    private static final int SEED_CYCLE = 1024;
+
+    private CaptchaProducer producer;
+    private CaptchaProducer cachedProducer;
+    private CaptchaProducer softwareProducer;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSize s = BenchmarkSize.parse(size);
+        IGenerator g = "arithmetic".equals(generator) ? new ArithmeticGenerator() : new CharGenerator(4);
+        producer = new CaptchaProducer.Builder()
+                .width(s.width)
+                .height(s.height)
+                .generator(g)
+                .build();
+        cachedProducer = new CaptchaProducer.Builder()
+                .width(s.width)
+                .height(s.height)
+                .generator(g)
+                .backgroundCache(16, Duration.ofMinutes(1))
+                .build();
+        softwareProducer = new CaptchaProducer.Builder()
+                .width(s.width)
+                .height(s.height)
+                .generator(g)
+                .renderBackend(RenderBackend.SOFTWARE)
+                .build();
+    }
+
+    @Benchmark
+    public Captcha nextCaptcha() {
+        return producer.nextCaptcha();
+    }
+
+    /**
+     * 启用背景层缓存，每次只拷贝背景层并绘制文字和少量噪点
+     */
+    @Benchmark
+    public Captcha nextCaptchaCachedBackground() {
+        return cachedProducer.nextCaptcha();
+    }
+
+    /**
+     * 软件渲染后端，背景、干扰线和文字不经过 Java2D 的渲染管线
+     */
+    @Benchmark
+    public Captcha nextCaptchaSoftware() {
+        return softwareProducer.nextCaptcha();
+    }
+
+    /**
+     * 按种子生成，两次运行之间的工作负载逐字节相同，适合对比优化前后的结果
+     */
+    @Benchmark
+    public Captcha nextCaptchaSeeded() {
+        return producer.nextCaptcha(seed++ % SEED_CYCLE);
+    }
+
+    /**
+     * 一次批量生成 16 个，吞吐量按操作数折算成单个验证码
+     */
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public List<Captcha> nextCaptchas() {
+        return producer.nextCaptchas(16);
+    }
+}
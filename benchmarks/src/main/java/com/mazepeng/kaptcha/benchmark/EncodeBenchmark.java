@@ -0,0 +1,95 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import com.mazepeng.kaptcha.Captcha;
+import com.mazepeng.kaptcha.CaptchaProducer;
+import com.mazepeng.kaptcha.encoder.PngEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验证码图片的输出开销
+ * - encode / imageIoWrite：每次都完整编码 PNG，分别使用内置编码器和 ImageIO。
+ * - writeTo / toBase64 / writeDataUri：Captcha 会缓存编码结果，这里测的是缓存命中后的输出开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"120x40", "240x80", "360x120"})
+    public String size;
+
+    private Captcha captcha;
+    private OutputStream sink;
+    private final PngEncoder encoder = new PngEncoder();
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        BenchmarkSize s = BenchmarkSize.parse(size);
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .width(s.width)
+                .height(s.height)
+                .build();
+        captcha = producer.nextCaptcha();
+        sink = new BlackholeOutputStream(blackhole);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(captcha.getImage());
+    }
+
+    @Benchmark
+    public void writeTo() throws IOException {
+        captcha.writeTo(sink);
+    }
+
+    @Benchmark
+    public String toBase64() {
+        return captcha.toBase64();
+    }
+
+    @Benchmark
+    public void writeDataUri() throws IOException {
+        captcha.writeDataUri(sink);
+    }
+
+    /**
+     * 参照组：直接使用 ImageIO 编码同一张图片
+     */
+    @Benchmark
+    public void imageIoWrite() throws IOException {
+        ImageIO.write(captcha.getImage(), "png", sink);
+    }
+
+    /**
+     * 丢弃所有写入的数据，只把它们交给 Blackhole 以防止被优化掉
+     */
+    static final class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.filter.RippleFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图像滤镜在 3 倍超采样画布上的开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    @Param({"120x40", "240x80", "360x120"})
+    public String size;
+
+    private RippleFilter filter;
+    private RenderContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSize s = BenchmarkSize.parse(size);
+        int width = s.width * 3;
+        int height = s.height * 3;
+        int[] pixels = new int[width * height];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < pixels.length; i++) {
+            // 大部分是背景色，少量随机像素，接近真实的验证码画布
+            pixels[i] = random.nextInt(8) == 0 ? 0xFF000000 | random.nextInt(0x1000000) : 0xFFFFFFFF;
+        }
+        filter = new RippleFilter();
+        context = new RenderContext(null, width, height, 3, pixels, 0, width);
+    }
+
+    @Benchmark
+    public int[] ripple() {
+        filter.apply(context);
+        return context.getPixels();
+    }
+}
@@ -0,0 +1,45 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import com.mazepeng.kaptcha.api.IFontProvider;
+import com.mazepeng.kaptcha.api.ScaledFont;
+import com.mazepeng.kaptcha.font.DefaultFontProvider;
+import com.mazepeng.kaptcha.font.RandomFontProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 字体提供器每次获取字体的开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FontProviderBenchmark {
+
+    @Param({"random", "default"})
+    public String provider;
+
+    private IFontProvider fontProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fontProvider = "random".equals(provider) ? new RandomFontProvider(32) : new DefaultFontProvider(32);
+    }
+
+    @Benchmark
+    public Font getFont() {
+        return fontProvider.getFont();
+    }
+
+    /**
+     * 渲染时实际使用的路径：取得 3 倍超采样字号的字体及其度量
+     */
+    @Benchmark
+    public ScaledFont getScaledFont() {
+        return fontProvider.getScaledFont(3);
+    }
+}
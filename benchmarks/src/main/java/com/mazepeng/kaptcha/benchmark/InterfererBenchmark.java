@@ -0,0 +1,93 @@
+package com.mazepeng.kaptcha.benchmark;
+
+import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.interferer.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个干扰器在 3 倍超采样画布上的绘制开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InterfererBenchmark {
+
+    @Param({"120x40", "240x80", "360x120"})
+    public String size;
+
+    @Param({"line", "bessel", "noise", "warp", "composite"})
+    public String interferer;
+
+    /**
+     * context：与 Captcha 一样通过带像素数组的 RenderContext 调用；graphics：旧版 draw(Graphics2D, int, int)
+     */
+    @Param({"context", "graphics"})
+    public String path;
+
+    private IInterferer target;
+    private RenderContext context;
+    private BufferedImage canvas;
+    private Graphics2D g;
+    private int width;
+    private int height;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSize s = BenchmarkSize.parse(size);
+        width = s.width * 3;
+        height = s.height * 3;
+        target = create(interferer);
+        canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        g = canvas.createGraphics();
+        // 与 Captcha 中的渲染设置保持一致
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        int[] pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        context = new RenderContext(g, width, height, 3, pixels, 0, width);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage draw() {
+        if ("context".equals(path)) {
+            target.draw(context);
+        } else {
+            target.draw(g, width, height);
+        }
+        return canvas;
+    }
+
+    static IInterferer create(String name) {
+        switch (name) {
+            case "line":
+                return new LineInterferer(10);
+            case "bessel":
+                return new BesselCurveInterferer(3);
+            case "noise":
+                return new NoiseInterferer(0.7f);
+            case "warp":
+                return new WarpInterferer();
+            case "composite":
+                return new CompositeInterferer(new LineInterferer(5), new WarpInterferer(), new NoiseInterferer(0.6f));
+            default:
+                throw new IllegalArgumentException("Unknown interferer: " + name);
+        }
+    }
+}
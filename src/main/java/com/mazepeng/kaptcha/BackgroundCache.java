@@ -0,0 +1,203 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 背景层缓存
+ * <p>
+ * 背景填充和整条干扰器链是每张验证码中矢量绘制开销最大的部分。启用后预先渲染 N 个背景层（背景色 + 干扰），
+ * 每次请求只做一次像素拷贝，再在上面绘制文字和一层轻量的逐次干扰：
+ * - 背景层比画布大一圈，每次随机选择一层，并随机裁剪位置、水平和垂直翻转，同一层可以拼出大量不同的背景。
+ * - 每一层在刷新间隔（带随机抖动）后由取到它的请求线程重新渲染，同一时刻只有一个线程刷新同一层，
+ *   其他线程继续使用旧层，背景不会因为长期不变而被识别。
+ * 背景层中的干扰不再随每张验证码变化，因此应配合逐次干扰（默认是少量噪点）使用。
+ */
+final class BackgroundCache {
+
+    // 背景层在每个方向上比画布多出的比例，用于随机裁剪
+    private static final int MARGIN_DIVISOR = 8;
+
+    private final int width;
+    private final int height;
+    private final int layerWidth;
+    private final int layerHeight;
+    private final int scale;
+    private final RenderProfile profile;
+    private final boolean software;
+    private final Color backgroundColor;
+    private final IInterferer interferer;
+    private final IInterferer overlay;
+    private final long refreshNanos;
+    private final LongSupplier clock;
+
+    private final AtomicReferenceArray<Layer> layers;
+    private final AtomicLong rendered = new AtomicLong();
+
+    /**
+     * @param width        画布宽度（已乘以超采样倍数）
+     * @param height       画布高度（已乘以超采样倍数）
+     * @param profile      渲染档位
+     * @param backend      渲染后端
+     * @param background   背景色
+     * @param interferer   绘制到背景层中的干扰器，可以为 null
+     * @param overlay      每次请求在背景层之上额外绘制的干扰器，可以为 null
+     * @param layerCount   背景层数量
+     * @param refreshNanos 背景层的刷新间隔（纳秒）
+     * @param clock        纳秒时钟
+     */
+    BackgroundCache(int width, int height, RenderProfile profile, RenderBackend backend, Color background,
+                    IInterferer interferer, IInterferer overlay,
+                    int layerCount, long refreshNanos, LongSupplier clock) {
+        if (layerCount <= 0) {
+            throw new IllegalArgumentException("Layer count must be greater than 0.");
+        }
+        if (refreshNanos <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be greater than 0.");
+        }
+        this.width = width;
+        this.height = height;
+        this.layerWidth = width + width / MARGIN_DIVISOR;
+        this.layerHeight = height + height / MARGIN_DIVISOR;
+        this.scale = profile.getScale();
+        this.profile = profile;
+        this.software = backend == RenderBackend.SOFTWARE;
+        this.backgroundColor = background;
+        this.interferer = interferer;
+        this.overlay = overlay;
+        this.refreshNanos = refreshNanos;
+        this.clock = clock;
+        this.layers = new AtomicReferenceArray<>(layerCount);
+    }
+
+    /**
+     * 把一个随机选择、随机裁剪和翻转的背景层拷贝到画布上，然后绘制逐次干扰
+     * @param context 画布的渲染上下文，必须支持直接访问像素
+     */
+    void drawTo(RenderContext context) {
+        IRandomSource random = context.getRandom();
+        int[] src = acquire(random.nextInt(layers.length())).pixels;
+        int[] dst = context.getPixels();
+        int offset = context.getOffset();
+        int scanline = context.getScanline();
+        int dx = random.nextInt(layerWidth - width + 1);
+        int dy = random.nextInt(layerHeight - height + 1);
+        int flips = random.nextInt(4);
+        boolean flipX = (flips & 1) != 0;
+        boolean flipY = (flips & 2) != 0;
+
+        for (int y = 0; y < height; y++) {
+            int srcRow = (flipY ? dy + height - 1 - y : dy + y) * layerWidth + dx;
+            int dstRow = offset + y * scanline;
+            if (flipX) {
+                for (int x = 0, s = srcRow + width - 1; x < width; x++, s--) {
+                    dst[dstRow + x] = src[s];
+                }
+            } else {
+                System.arraycopy(src, srcRow, dst, dstRow, width);
+            }
+        }
+
+        if (overlay != null) {
+            overlay.draw(context);
+        }
+    }
+
+    /**
+     * @return 已经渲染的背景层总数（包括刷新），用于观察刷新频率
+     */
+    long getRenderedCount() {
+        return rendered.get();
+    }
+
+    /**
+     * 取得一个背景层，不存在或已过期时在当前线程上渲染新的一层
+     */
+    private Layer acquire(int index) {
+        Layer layer = layers.get(index);
+        long now = clock.getAsLong();
+        if (layer == null) {
+            Layer created = render(now);
+            // 并发时可能重复渲染，只保留先放入的一层
+            return layers.compareAndSet(index, null, created) ? created : layers.get(index);
+        }
+        if (now - layer.expiresAt >= 0 && layer.claimRefresh()) {
+            Layer refreshed;
+            try {
+                refreshed = render(now);
+            } catch (RuntimeException e) {
+                // 刷新失败时允许下一个请求重试
+                layer.releaseRefresh();
+                throw e;
+            }
+            layers.set(index, refreshed);
+            return refreshed;
+        }
+        return layer;
+    }
+
+    private Layer render(long now) {
+        BufferedImage image = new BufferedImage(layerWidth, layerHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Graphics2D g = image.createGraphics();
+        try {
+            profile.applyHints(g);
+            Rasterizer rasterizer = null;
+            if (software) {
+                rasterizer = new Rasterizer(pixels, 0, layerWidth, layerWidth, layerHeight);
+                rasterizer.fillRect(0, 0, layerWidth, layerHeight, backgroundColor.getRGB());
+            } else {
+                g.setColor(backgroundColor);
+                g.fillRect(0, 0, layerWidth, layerHeight);
+            }
+            if (interferer != null) {
+                interferer.draw(new RenderContext(g, layerWidth, layerHeight, scale, pixels, 0, layerWidth,
+                        ThreadLocalRandomSource.getInstance(), rasterizer));
+            }
+        } finally {
+            g.dispose();
+        }
+        rendered.incrementAndGet();
+        // 刷新时间加上最多一半间隔的随机抖动，避免所有背景层同时过期
+        long jitter = ThreadLocalRandom.current().nextLong(refreshNanos / 2 + 1);
+        return new Layer(pixels, now + refreshNanos + jitter);
+    }
+
+    /**
+     * 一个渲染好的背景层，像素在创建后不再修改
+     */
+    private static final class Layer {
+
+        final int[] pixels;
+        final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Layer(int[] pixels, long expiresAt) {
+            this.pixels = pixels;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return 当前线程是否取得了刷新这一层的权利
+         */
+        boolean claimRefresh() {
+            return refreshing.compareAndSet(false, true);
+        }
+
+        void releaseRefresh() {
+            refreshing.set(false);
+        }
+    }
+}
@@ -1,14 +1,16 @@
 package com.mazepeng.kaptcha;
 
-import com.mazepeng.kaptcha.api.*;
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.RenderStage;
+import com.mazepeng.kaptcha.encoder.DataUriWriter;
+import com.mazepeng.kaptcha.encoder.PngEncoder;
 import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Base64;
 
 /**
@@ -18,66 +20,16 @@ public final class Captcha {
 
     private final String text;
     private final BufferedImage image;
-
-    Captcha(CaptchaProducer producer) {
-        CaptchaContent content = producer.getGenerator().generate();
-        this.text = content.getAnswer();
-        String drawText = content.getDrawText();
-
-        int scale = 3;
-        int realWidth = producer.getWidth() * scale;
-        int realHeight = producer.getHeight() * scale;
-
-        BufferedImage highResImage = new BufferedImage(realWidth, realHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = highResImage.createGraphics();
-
-        try {
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-            g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-
-            g.setColor(producer.getBackgroundColor());
-            g.fillRect(0, 0, realWidth, realHeight);
-
-            if (producer.getInterferer() != null) {
-                producer.getInterferer().draw(g, realWidth, realHeight);
-            }
-
-            Font baseFont = producer.getFontProvider().getFont();
-            Font font = baseFont.deriveFont((float) (baseFont.getSize() * scale));
-            g.setFont(font);
-            FontMetrics fm = g.getFontMetrics();
-
-            int x = (realWidth - fm.stringWidth(drawText)) / 2;
-            int y = (realHeight - fm.getHeight()) / 2 + fm.getAscent();
-
-            if (drawText.length() > 1 && drawText.length() == this.text.length()) {
-                for (int i = 0; i < drawText.length(); i++) {
-                    g.setColor(producer.getColorizer().nextColor());
-                    String charToDraw = String.valueOf(drawText.charAt(i));
-                    int charWidth = fm.stringWidth(charToDraw);
-                    g.drawString(charToDraw, x, y);
-                    x += charWidth;
-                }
-            } else {
-                g.setColor(producer.getColorizer().nextColor());
-                g.drawString(drawText, x, y);
-            }
-
-        } catch (Exception e) {
-            throw new CaptchaGenerationException("Failed to generate captcha image.", e);
-        } finally {
-            g.dispose();
-        }
-
-        this.image = new BufferedImage(producer.getWidth(), producer.getHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = this.image.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2.drawImage(highResImage, 0, 0, producer.getWidth(), producer.getHeight(), null);
-        g2.dispose();
+    private final PngEncoder encoder;
+    private final IMetricsListener metrics;
+    // 编码好的 PNG 数据，第一次输出时生成（或由 CaptchaPool 在后台预先生成），之后重复使用
+    private volatile byte[] encoded;
+
+    Captcha(String text, BufferedImage image, PngEncoder encoder, IMetricsListener metrics) {
+        this.text = text;
+        this.image = image;
+        this.encoder = encoder;
+        this.metrics = metrics;
     }
 
     public String getText() {
@@ -89,17 +41,88 @@ public final class Captcha {
     }
 
     public void writeTo(OutputStream os) throws IOException {
-        ImageIO.write(this.image, "png", os);
+        os.write(encoded());
+    }
+
+    /**
+     * 把 PNG 数据写入通道，直接使用缓存的字节，不做额外拷贝
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return 包装缓存的 PNG 数据的只读 ByteBuffer（零拷贝）
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(encoded()).asReadOnlyBuffer();
     }
 
     public String toBase64() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        return Base64.getEncoder().encodeToString(encoded());
+    }
+
+    /**
+     * @return 完整的 Data URI 字符串，可直接用作 img 标签的 src
+     */
+    public String toDataUri() {
+        byte[] bytes = encoded();
+        StringBuilder sb = new StringBuilder(DataUriWriter.length(bytes.length));
         try {
-            ImageIO.write(this.image, "png", baos);
-            byte[] imageBytes = baos.toByteArray();
-            return Base64.getEncoder().encodeToString(imageBytes);
+            DataUriWriter.append(bytes, sb);
         } catch (IOException e) {
-            throw new CaptchaGenerationException("Failed to convert captcha image to Base64.", e);
+            throw new CaptchaGenerationException("Failed to convert captcha image to data URI.", e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 以流式 Base64 把 Data URI 写入输出流，不生成中间的 Base64 数组或字符串
+     */
+    public void writeDataUri(OutputStream os) throws IOException {
+        DataUriWriter.write(encoded(), os);
+    }
+
+    /**
+     * 以流式 Base64 把 Data URI 追加到 Appendable（如 Writer、StringBuilder）
+     */
+    public void appendDataUri(Appendable out) throws IOException {
+        DataUriWriter.append(encoded(), out);
+    }
+
+    /**
+     * 预先编码为 PNG 并缓存结果，之后的输出直接使用缓存的字节
+     */
+    void preEncode() {
+        encoded();
+    }
+
+    /**
+     * 只编码一次：并发调用时最多重复编码，但结果相同，无需加锁
+     */
+    private byte[] encoded() {
+        byte[] bytes = this.encoded;
+        if (bytes == null) {
+            bytes = metrics == null ? encoder.encode(this.image) : encodeTimed();
+            this.encoded = bytes;
+        }
+        return bytes;
+    }
+
+    private byte[] encodeTimed() {
+        long start = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = encoder.encode(this.image);
+        } catch (RuntimeException e) {
+            metrics.onFailure(RenderStage.ENCODE, e);
+            throw e;
         }
+        metrics.onStage(RenderStage.ENCODE, System.nanoTime() - start);
+        metrics.onEncoded(bytes.length);
+        return bytes;
     }
 }
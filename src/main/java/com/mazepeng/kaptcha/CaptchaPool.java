@@ -0,0 +1,332 @@
+package com.mazepeng.kaptcha;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 预渲染验证码池
+ * <p>
+ * 在后台工作线程中预先生成验证码，并缓存在一个有界队列中，请求线程直接取用现成的实例。
+ * - 当队列中的数量降到低水位线（lowWatermark）时唤醒工作线程，持续补充直到高水位线（highWatermark）。
+ * - 队列为空时回退为在调用线程上同步渲染，保证永远不会阻塞等待。
+ * - 多个工作线程补充时，每批的数量从"池中数量 + 正在渲染的数量"与高水位线的差额中原子地预留，
+ *   渲染出的验证码总能放入队列，不会因为超出容量而被丢弃。
+ * - 通过命中 / 未命中计数器可以观察池的大小是否合适。
+ */
+public class CaptchaPool implements AutoCloseable {
+
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+    // 后台补充时每次以拼图方式连续渲染的最大数量
+    private static final int REFILL_BATCH = 8;
+
+    private final CaptchaProducer producer;
+    private final BlockingQueue<Captcha> queue;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final boolean preEncode;
+    private final ExecutorService workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refillNeeded = lock.newCondition();
+    private volatile boolean filling = true;
+    // 已经预留、正在渲染还没有入队的验证码数量
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private CaptchaPool(CaptchaPool.Builder builder) {
+        this.producer = builder.producer;
+        this.queue = new ArrayBlockingQueue<>(builder.capacity);
+        this.lowWatermark = builder.lowWatermark;
+        this.highWatermark = builder.highWatermark;
+        this.preEncode = builder.preEncode;
+
+        String prefix = "kaptcha-pool-" + POOL_SEQUENCE.incrementAndGet() + "-worker-";
+        AtomicInteger threadSequence = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, prefix + threadSequence.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.workers = Executors.newFixedThreadPool(builder.workers, threadFactory);
+        for (int i = 0; i < builder.workers; i++) {
+            workers.execute(this::refillLoop);
+        }
+    }
+
+    /**
+     * 从池中取出一个验证码。池为空（或已关闭）时在当前线程上同步生成。
+     * @return 一个新的 Captcha 对象，每个实例只会被返回一次
+     */
+    public Captcha nextCaptcha() {
+        Captcha captcha = queue.poll();
+        if (captcha != null) {
+            hits.increment();
+            if (queue.size() <= lowWatermark) {
+                requestRefill();
+            }
+            return captcha;
+        }
+        misses.increment();
+        requestRefill();
+        return render();
+    }
+
+    /**
+     * @return 直接从池中取到验证码的次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 池为空、回退为同步渲染的次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 后台渲染失败的次数
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return 当前池中可用的验证码数量
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 停止后台补充线程，并等待正在进行中的渲染结束。关闭后 nextCaptcha() 仍然可用，会先取完剩余的缓存再回退为同步渲染。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        lock.lock();
+        try {
+            refillNeeded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdownNow();
+        try {
+            // 等待正在进行中的渲染结束，保证关闭后不会再有新的验证码入池
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Captcha render() {
+        Captcha captcha = producer.nextCaptcha();
+        if (preEncode) {
+            captcha.preEncode();
+        }
+        return captcha;
+    }
+
+    /**
+     * 后台补充时一次渲染多张，共用一块拼图画布和一次缩放
+     */
+    private Captcha[] renderBatch(int count) {
+        Captcha[] batch = producer.renderSeries(count);
+        if (preEncode) {
+            for (Captcha captcha : batch) {
+                captcha.preEncode();
+            }
+        }
+        return batch;
+    }
+
+    private void requestRefill() {
+        // 工作线程停止补充时先把 filling 置为 false 再检查数量，这里先取用再读 filling，两边至少有一方能看到对方
+        if (filling || closed) {
+            return;
+        }
+        lock.lock();
+        try {
+            filling = true;
+            refillNeeded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refillLoop() {
+        try {
+            while (!closed) {
+                awaitRefill();
+                int count;
+                while (!closed && (count = reserve()) > 0) {
+                    Captcha[] batch;
+                    try {
+                        batch = renderBatch(count);
+                    } catch (RuntimeException e) {
+                        // 渲染失败时暂停补充，等下一次取用时再重试，避免工作线程空转
+                        inFlight.addAndGet(-count);
+                        failures.increment();
+                        filling = false;
+                        break;
+                    }
+                    try {
+                        if (closed) {
+                            return;
+                        }
+                        // 预留保证了队列中有足够的空位
+                        for (Captcha captcha : batch) {
+                            queue.offer(captcha);
+                        }
+                    } finally {
+                        inFlight.addAndGet(-count);
+                    }
+                }
+                stopFilling();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 预留下一批要渲染的数量，池中数量加上所有工作线程正在渲染的数量不超过高水位线
+     * @return 预留的数量，已经足够时返回 0
+     */
+    private int reserve() {
+        while (true) {
+            int reserved = inFlight.get();
+            int count = Math.min(REFILL_BATCH, highWatermark - queue.size() - reserved);
+            if (count <= 0) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(reserved, reserved + count)) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 停止补充。置为 false 之后再检查一次数量，避免错过这期间取用线程发出的补充请求
+     */
+    private void stopFilling() {
+        if (!filling) {
+            return;
+        }
+        filling = false;
+        if (queue.size() + inFlight.get() <= lowWatermark) {
+            requestRefill();
+        }
+    }
+
+    private void awaitRefill() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!filling && !closed) {
+                refillNeeded.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Builder 类，用于配置验证码池
+     */
+    public static class Builder {
+
+        final CaptchaProducer producer;
+        int capacity = 256;
+        int lowWatermark = -1;
+        int highWatermark = -1;
+        int workers = 1;
+        boolean preEncode = false;
+
+        /**
+         * @param producer 实际负责渲染验证码的生产者
+         */
+        public Builder(CaptchaProducer producer) {
+            this.producer = Objects.requireNonNull(producer);
+        }
+
+        /**
+         * 队列容量，即池中最多缓存的验证码数量
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * 低水位线：池中数量降到该值（含）时开始后台补充。默认为容量的 1/4
+         */
+        public Builder lowWatermark(int lowWatermark) {
+            this.lowWatermark = lowWatermark;
+            return this;
+        }
+
+        /**
+         * 高水位线：补充到该数量后停止。默认为容量
+         */
+        public Builder highWatermark(int highWatermark) {
+            this.highWatermark = highWatermark;
+            return this;
+        }
+
+        /**
+         * 后台补充线程数量，默认为 1
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * 是否在后台预先编码为 PNG，开启后 writeTo / toBase64 不再占用请求线程的 CPU
+         */
+        public Builder preEncode(boolean preEncode) {
+            this.preEncode = preEncode;
+            return this;
+        }
+
+        /**
+         * 构建验证码池，并立即开始在后台填充
+         * @return 一个已启动的 CaptchaPool 实例
+         */
+        public CaptchaPool build() {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be greater than 0.");
+            }
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Workers must be greater than 0.");
+            }
+            if (highWatermark < 0) {
+                highWatermark = capacity;
+            }
+            if (lowWatermark < 0) {
+                lowWatermark = Math.min(capacity / 4, highWatermark - 1);
+            }
+            if (highWatermark > capacity || highWatermark <= 0) {
+                throw new IllegalArgumentException("High watermark must be in (0, capacity].");
+            }
+            if (lowWatermark >= highWatermark) {
+                throw new IllegalArgumentException("Low watermark must be less than high watermark.");
+            }
+            return new CaptchaPool(this);
+        }
+    }
+}
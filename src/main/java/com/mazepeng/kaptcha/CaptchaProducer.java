@@ -1,36 +1,114 @@
 package com.mazepeng.kaptcha;
 
 import com.mazepeng.kaptcha.api.IColorizer;
+import com.mazepeng.kaptcha.api.IFilter;
 import com.mazepeng.kaptcha.api.IFontProvider;
 import com.mazepeng.kaptcha.api.IGenerator;
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.LoadLevel;
 import com.mazepeng.kaptcha.color.RandomColorizer;
+import com.mazepeng.kaptcha.encoder.PngEncoder;
 import com.mazepeng.kaptcha.font.DefaultFontProvider;
+import com.mazepeng.kaptcha.font.GlyphCache;
 import com.mazepeng.kaptcha.generator.CharGenerator;
 import com.mazepeng.kaptcha.interferer.LineInterferer;
+import com.mazepeng.kaptcha.interferer.NoiseInterferer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
 
 import java.awt.*;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CaptchaProducer {
+    // 批量生成时每个子任务至少渲染的数量，过小的任务拆分开销会超过并行收益
+    private static final int MIN_BATCH_GRAIN = 4;
+    // 自适应降级到 MINIMAL 档位且没有配置背景层缓存时使用的缓存设置
+    private static final int SHEDDING_BACKGROUND_LAYERS = 16;
+    private static final Duration SHEDDING_BACKGROUND_REFRESH = Duration.ofMinutes(1);
+
     // 所有配置信息都保存在这里
     private final int width;
     private final int height;
     private final IGenerator generator;
     private final IInterferer interferer;
+    private final IFilter filter;
     private final IFontProvider fontProvider;
     private final IColorizer colorizer;
     private final Color backgroundColor;
+    private final GlyphCache glyphCache;
+    private final RenderProfile renderProfile;
+    private final RenderBackend renderBackend;
+    private final PngEncoder pngEncoder;
+    private final Executor executor;
+    private final IMetricsListener metricsListener;
+    private final BackgroundCache backgroundCache;
+    private final RendererPool renderers;
+    // 固定种子模式下的基础种子和序号，为 null 时使用线程本地的随机数
+    private final Long seed;
+    private final AtomicLong sequence = new AtomicLong();
+    // 自适应降级的控制器和各档位对应的生产者（下标为 LoadLevel 的序号），未启用时为 null
+    private final LoadShedder shedder;
+    private final CaptchaProducer[] levels;
 
     // 构造函数由 Builder 调用
     private CaptchaProducer(CaptchaProducer.Builder builder) {
+        this(builder, LoadLevel.NORMAL);
+    }
+
+    /**
+     * @param level 档位，NORMAL 按配置创建，其他档位按降级规则替换超采样倍数和背景层缓存
+     */
+    private CaptchaProducer(CaptchaProducer.Builder builder, LoadLevel level) {
         this.width = builder.width;
         this.height = builder.height;
         this.generator = builder.generator;
         this.interferer = builder.interferer;
+        this.filter = builder.filter;
         this.fontProvider = builder.fontProvider;
         this.colorizer = builder.colorizer;
         this.backgroundColor = builder.backgroundColor;
+        this.glyphCache = builder.glyphCache;
+        this.renderProfile = level == LoadLevel.NORMAL ? builder.renderProfile
+                : level == LoadLevel.REDUCED ? builder.renderProfile.cheaper() : RenderProfile.FAST;
+        this.renderBackend = builder.renderBackend;
+        this.pngEncoder = builder.pngEncoder;
+        this.executor = builder.executor;
+        this.metricsListener = builder.metricsListener;
+        this.seed = builder.seed;
+        int scale = renderProfile.getScale();
+        if (builder.backgroundLayers > 0) {
+            this.backgroundCache = new BackgroundCache(width * scale, height * scale, renderProfile, renderBackend,
+                    backgroundColor, interferer, builder.backgroundOverlay, builder.backgroundLayers,
+                    builder.backgroundRefresh.toNanos(), System::nanoTime);
+        } else if (level == LoadLevel.MINIMAL && interferer != null) {
+            this.backgroundCache = new BackgroundCache(width * scale, height * scale, renderProfile, renderBackend,
+                    backgroundColor, interferer, new NoiseInterferer(0.2f), SHEDDING_BACKGROUND_LAYERS,
+                    SHEDDING_BACKGROUND_REFRESH.toNanos(), System::nanoTime);
+        } else {
+            this.backgroundCache = null;
+        }
+        this.renderers = new RendererPool(this, builder.rendererPoolSize);
+        if (level == LoadLevel.NORMAL && builder.latencyBudget != null) {
+            this.shedder = new LoadShedder(builder.latencyBudget.toNanos(), builder.maxPending,
+                    builder.sheddingHold.toNanos(), System::nanoTime, metricsListener);
+            this.levels = new CaptchaProducer[]{this,
+                    new CaptchaProducer(builder, LoadLevel.REDUCED), new CaptchaProducer(builder, LoadLevel.MINIMAL)};
+        } else {
+            this.shedder = null;
+            this.levels = null;
+        }
     }
 
     /**
@@ -39,7 +117,165 @@ public class CaptchaProducer {
      * @return 一个新的 Captcha 对象
      */
     public Captcha nextCaptcha() {
-        return new Captcha(this);
+        if (shedder == null) {
+            return render(nextRandomSource());
+        }
+        shedder.enter();
+        return renderShedding();
+    }
+
+    /**
+     * 使用指定的种子生成验证码。
+     * 配置相同的生产者对同一个种子总是生成相同的答案和逐字节相同的 PNG，可以用于复现问题、按种子缓存渲染结果，
+     * 或在基准测试中固定工作负载。注意种子决定了答案，不要把种子暴露给客户端。
+     * @param seed 种子
+     * @return 由种子决定的验证码
+     */
+    public Captcha nextCaptcha(long seed) {
+        return render(new SeededRandomSource(seed));
+    }
+
+    /**
+     * 在 Builder 中配置的执行器上异步生成验证码，调用线程不会因为图片渲染而阻塞
+     * @return 完成时携带新验证码的 CompletableFuture，渲染失败时以 CaptchaGenerationException 异常完成
+     */
+    public CompletableFuture<Captcha> nextCaptchaAsync() {
+        return nextCaptchaAsync(executor);
+    }
+
+    /**
+     * 在指定的执行器上异步生成验证码，例如在 JDK 21 上可以传入虚拟线程执行器
+     * @param executor 执行渲染任务的执行器
+     * @return 完成时携带新验证码的 CompletableFuture
+     */
+    public CompletableFuture<Captcha> nextCaptchaAsync(Executor executor) {
+        Objects.requireNonNull(executor);
+        if (shedder == null) {
+            return CompletableFuture.supplyAsync(this::nextCaptcha, executor);
+        }
+        // 提交时就计入排队数量，执行器积压的任务也会触发降级
+        shedder.enter();
+        try {
+            return CompletableFuture.supplyAsync(this::renderShedding, executor);
+        } catch (RejectedExecutionException e) {
+            shedder.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 当前的渲染档位，未启用自适应降级时始终为 NORMAL
+     */
+    public LoadLevel getLoadLevel() {
+        return shedder == null ? LoadLevel.NORMAL : shedder.getLevel();
+    }
+
+    /**
+     * 使用 fork-join 并行生成一批验证码。
+     * 同一个子任务内的验证码以拼图方式渲染：多张验证码画在同一块画布的不同图块上，共用一套渲染提示和派生字体，
+     * 整块画布只缩放一次，比逐个调用 nextCaptcha() 开销更小，生成的 Captcha 与 nextCaptcha() 完全相同。
+     * 如果 Builder 中配置的执行器是 ForkJoinPool 则在其中执行，否则使用公共池。
+     * @param count 需要生成的数量
+     * @return 按生成顺序排列的验证码列表（不可修改）
+     */
+    public List<Captcha> nextCaptchas(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Captcha count must not be negative.");
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        Captcha[] captchas = new Captcha[count];
+        // 固定种子模式下一次预留 count 个序号，第 i 张的种子与拆分方式无关
+        long base = seed == null ? 0L : sequence.getAndAdd(count);
+        ForkJoinPool pool = executor instanceof ForkJoinPool ? (ForkJoinPool) executor : ForkJoinPool.commonPool();
+        // 每个工作线程大约分到 4 个子任务，既能均衡负载，又让每块画布尽量多复用几次
+        int grain = Math.max(MIN_BATCH_GRAIN, count / (pool.getParallelism() * 4));
+        BatchTask task = current().new BatchTask(captchas, base, 0, count, grain);
+        if (count <= grain) {
+            task.renderRange();
+        } else {
+            pool.invoke(task);
+        }
+        return Collections.unmodifiableList(Arrays.asList(captchas));
+    }
+
+    /**
+     * 在当前线程上以拼图方式连续渲染一批验证码，供验证码池补充使用
+     * @param count 需要生成的数量
+     */
+    Captcha[] renderSeries(int count) {
+        long base = seed == null ? 0L : sequence.getAndAdd(count);
+        Captcha[] captchas = new Captcha[count];
+        current().renderSeries(captchas, base, 0, count);
+        return captchas;
+    }
+
+    /**
+     * 用一个拼图渲染器依次渲染 [from, to) 区间内的验证码，第 i 张使用序号 base + i 的随机数来源
+     */
+    private void renderSeries(Captcha[] captchas, long base, int from, int to) {
+        CaptchaRenderer renderer = renderers.acquireSheet(to - from);
+        boolean reusable = false;
+        try {
+            int tiles = renderer.getTiles();
+            for (int i = from; i < to; i += tiles) {
+                int n = Math.min(tiles, to - i);
+                IRandomSource[] randoms = new IRandomSource[n];
+                for (int j = 0; j < n; j++) {
+                    randoms[j] = randomSource(base + i + j);
+                }
+                System.arraycopy(renderer.renderSheet(randoms), 0, captchas, i, n);
+            }
+            reusable = true;
+        } finally {
+            recycle(renderer, reusable);
+        }
+    }
+
+    /**
+     * 按当前档位渲染一张验证码，记录耗时并更新档位。调用前已经计入排队数量
+     */
+    private Captcha renderShedding() {
+        long start = System.nanoTime();
+        try {
+            return current().render(nextRandomSource());
+        } finally {
+            shedder.exit(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return 当前档位对应的生产者，未启用自适应降级时为自身
+     */
+    private CaptchaProducer current() {
+        return shedder == null ? this : levels[shedder.getLevel().ordinal()];
+    }
+
+    /**
+     * 用池中的单张渲染器渲染一张验证码
+     */
+    private Captcha render(IRandomSource random) {
+        CaptchaRenderer renderer = renderers.acquire();
+        boolean reusable = false;
+        try {
+            Captcha captcha = renderer.render(random);
+            reusable = true;
+            return captcha;
+        } finally {
+            recycle(renderer, reusable);
+        }
+    }
+
+    /**
+     * 渲染成功的渲染器放回池中，失败的直接释放
+     */
+    private void recycle(CaptchaRenderer renderer, boolean reusable) {
+        if (reusable) {
+            renderers.release(renderer);
+        } else {
+            renderer.close();
+        }
     }
 
     // 内部 getter，供 Captcha 类访问配置
@@ -47,10 +283,64 @@ public class CaptchaProducer {
     int getHeight() { return height; }
     IGenerator getGenerator() { return generator; }
     IInterferer getInterferer() { return interferer; }
+    IFilter getFilter() { return filter; }
     IFontProvider getFontProvider() { return fontProvider; }
     IColorizer getColorizer() { return colorizer; }
     Color getBackgroundColor() { return backgroundColor; }
+    GlyphCache getGlyphCache() { return glyphCache; }
+    RenderProfile getRenderProfile() { return renderProfile; }
+    RenderBackend getRenderBackend() { return renderBackend; }
+    PngEncoder getPngEncoder() { return pngEncoder; }
+    IMetricsListener getMetricsListener() { return metricsListener; }
+    BackgroundCache getBackgroundCache() { return backgroundCache; }
 
+    /**
+     * 下一次渲染的随机数来源：默认模式下是共享的线程本地来源，固定种子模式下按序号派生
+     */
+    private IRandomSource nextRandomSource() {
+        return seed == null ? ThreadLocalRandomSource.getInstance() : randomSource(sequence.getAndIncrement());
+    }
+
+    private IRandomSource randomSource(long index) {
+        if (seed == null) {
+            return ThreadLocalRandomSource.getInstance();
+        }
+        return new SeededRandomSource(SeededRandomSource.derive(seed, index));
+    }
+
+    /**
+     * 把区间不断二分，直到足够小时用一个拼图渲染器依次渲染区间内的验证码
+     */
+    private final class BatchTask extends RecursiveAction {
+
+        private final Captcha[] captchas;
+        private final long base;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        BatchTask(Captcha[] captchas, long base, int from, int to, int grain) {
+            this.captchas = captchas;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                renderRange();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(captchas, base, from, mid, grain), new BatchTask(captchas, base, mid, to, grain));
+        }
+
+        void renderRange() {
+            renderSeries(captchas, base, from, to);
+        }
+    }
 
     /**
      * Builder 类，现在它的 build() 方法返回一个 CaptchaProducer
@@ -61,9 +351,24 @@ public class CaptchaProducer {
          int height = 40;
          IGenerator generator = new CharGenerator(4);
          IInterferer interferer = new LineInterferer(10);
+         IFilter filter = null;
          IFontProvider fontProvider = new DefaultFontProvider(32);
          IColorizer colorizer = new RandomColorizer();
          Color backgroundColor = Color.WHITE;
+         GlyphCache glyphCache = GlyphCache.getShared();
+         RenderProfile renderProfile = RenderProfile.QUALITY;
+         RenderBackend renderBackend = RenderBackend.JAVA2D;
+         PngEncoder pngEncoder = new PngEncoder();
+         Executor executor = ForkJoinPool.commonPool();
+         IMetricsListener metricsListener = null;
+         Long seed = null;
+         int backgroundLayers = 0;
+         int rendererPoolSize = Runtime.getRuntime().availableProcessors();
+         Duration latencyBudget;
+         int maxPending;
+         Duration sheddingHold;
+         Duration backgroundRefresh;
+         IInterferer backgroundOverlay;
 
         public Builder width(int width) {
             this.width = width;
@@ -85,6 +390,14 @@ public class CaptchaProducer {
             return this;
         }
 
+        /**
+         * 设置在文字绘制完成后应用到整张画布的滤镜（如 RippleFilter），默认不使用
+         */
+        public Builder filter(IFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
         public Builder fontProvider(IFontProvider fontProvider) {
             this.fontProvider = Objects.requireNonNull(fontProvider);
             return this;
@@ -100,6 +413,139 @@ public class CaptchaProducer {
             return this;
         }
 
+        /**
+         * 设置字形缓存，文字会使用缓存的字形蒙版直接合成，默认使用进程内共享的缓存。
+         * 传入 null 时每次都通过 Java2D 的 drawString 绘制文字。
+         */
+        public Builder glyphCache(GlyphCache glyphCache) {
+            this.glyphCache = glyphCache;
+            return this;
+        }
+
+        /**
+         * 设置渲染质量档位，默认为 QUALITY（3 倍超采样）
+         */
+        public Builder renderProfile(RenderProfile renderProfile) {
+            this.renderProfile = Objects.requireNonNull(renderProfile);
+            return this;
+        }
+
+        /**
+         * 设置渲染后端，默认为 JAVA2D。SOFTWARE 后端不经过 Java2D 的渲染管线绘制背景、内置干扰器和文字，
+         * 多核机器上吞吐随核数线性增长
+         */
+        public Builder renderBackend(RenderBackend renderBackend) {
+            this.renderBackend = Objects.requireNonNull(renderBackend);
+            return this;
+        }
+
+        /**
+         * 设置每个生产者最多缓存的空闲渲染器数量（单张和批量渲染各自计算），默认等于 CPU 核数。
+         * 每个渲染器持有一块超采样画布，复用后不再为每张验证码分配画布和 Graphics2D。传入 0 时不缓存。
+         */
+        public Builder rendererPool(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Renderer pool size must not be negative.");
+            }
+            this.rendererPoolSize = size;
+            return this;
+        }
+
+        /**
+         * 设置 writeTo / toBase64 使用的 PNG 编码器，可以调整压缩级别、行过滤方式以及是否输出调色板图片
+         */
+        public Builder pngEncoder(PngEncoder pngEncoder) {
+            this.pngEncoder = Objects.requireNonNull(pngEncoder);
+            return this;
+        }
+
+        /**
+         * 设置 nextCaptchaAsync() 默认使用的执行器，默认为 ForkJoinPool 公共池。
+         * 传入 ForkJoinPool 时 nextCaptchas() 的批量任务也会在其中执行。
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * 设置渲染指标监听器（如 HistogramMetricsListener），接收每个阶段的耗时、图片大小和失败事件。
+         * 默认为 null，不做任何计时。
+         */
+        public Builder metricsListener(IMetricsListener metricsListener) {
+            this.metricsListener = metricsListener;
+            return this;
+        }
+
+        /**
+         * 启用背景层缓存：预先渲染 layers 个背景层（背景色 + 干扰器），每次请求随机选择一层并随机裁剪、翻转，
+         * 只绘制文字和少量噪点，可以省去大部分矢量绘制的开销。背景层每隔 refreshInterval（带随机抖动）重新渲染。
+         * 固定种子渲染时不使用缓存，以保证结果可以复现。
+         * @param layers          背景层数量，例如 16
+         * @param refreshInterval 背景层的刷新间隔，例如 1 分钟
+         */
+        public Builder backgroundCache(int layers, Duration refreshInterval) {
+            return backgroundCache(layers, refreshInterval, new NoiseInterferer(0.2f));
+        }
+
+        /**
+         * 启用背景层缓存，并指定每次请求在背景层之上绘制的逐次干扰器
+         * @param overlay 逐次干扰器，为 null 时不绘制
+         */
+        public Builder backgroundCache(int layers, Duration refreshInterval, IInterferer overlay) {
+            if (layers <= 0) {
+                throw new IllegalArgumentException("Layer count must be greater than 0.");
+            }
+            if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+                throw new IllegalArgumentException("Refresh interval must be greater than 0.");
+            }
+            this.backgroundLayers = layers;
+            this.backgroundRefresh = refreshInterval;
+            this.backgroundOverlay = overlay;
+            return this;
+        }
+
+        /**
+         * 启用自适应降级，保持时间为 10 秒，见 {@link #loadShedding(Duration, int, Duration)}
+         */
+        public Builder loadShedding(Duration latencyBudget, int maxPending) {
+            return loadShedding(latencyBudget, maxPending, Duration.ofSeconds(10));
+        }
+
+        /**
+         * 启用自适应降级：nextCaptcha() / nextCaptchaAsync() 的渲染耗时平均值超过预算，或者排队和渲染中的请求数超过上限时，
+         * 逐级切换到更便宜的档位（见 LoadLevel），按高一档位估算的耗时回落到预算的一半以下并保持 holdTime 之后再逐级恢复。
+         * 批量生成和验证码池按当前档位渲染，但不参与统计；nextCaptcha(long seed) 始终按配置渲染。
+         * 当前档位可以通过 getLoadLevel() 查询，档位变化时会通知 IMetricsListener.onLoadLevelChanged。
+         * @param latencyBudget 单张验证码渲染耗时的预算，例如 5 毫秒
+         * @param maxPending    允许同时排队或渲染中的请求数，例如 CPU 核数的 4 倍
+         * @param holdTime      恢复到更高档位之前至少保持当前档位的时间
+         */
+        public Builder loadShedding(Duration latencyBudget, int maxPending, Duration holdTime) {
+            if (latencyBudget.isNegative() || latencyBudget.isZero()) {
+                throw new IllegalArgumentException("Latency budget must be greater than 0.");
+            }
+            if (maxPending <= 0) {
+                throw new IllegalArgumentException("Max pending count must be greater than 0.");
+            }
+            if (holdTime.isNegative()) {
+                throw new IllegalArgumentException("Hold time must not be negative.");
+            }
+            this.latencyBudget = latencyBudget;
+            this.maxPending = maxPending;
+            this.sheddingHold = holdTime;
+            return this;
+        }
+
+        /**
+         * 启用固定种子模式：第 n 次生成的验证码由 (seed, n) 决定，同样的配置和调用顺序总是得到同样的结果，
+         * 用于回归测试和可复现的基准测试。生产环境不要设置，否则答案可以被预测。
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
         /**
          * 构建最终的 CaptchaProducer 对象
          * @return 一个配置好的、可复用的 CaptchaProducer 实例
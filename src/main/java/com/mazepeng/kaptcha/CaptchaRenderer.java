@@ -0,0 +1,366 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.*;
+import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
+import com.mazepeng.kaptcha.font.GlyphCache;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
+import com.mazepeng.kaptcha.raster.Downsampler;
+import com.mazepeng.kaptcha.raster.Rasterizer;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * 验证码渲染器
+ * <p>
+ * 持有一块超采样画布以及设置好渲染提示的 Graphics2D，可以连续渲染多张验证码而不必每次重新分配：
+ * - 画布、像素数组和 RenderContext 在渲染器的整个生命周期内复用。
+ * - 字体由字体提供器以 ScaledFont 的形式给出（已派生到超采样字号并带有度量），渲染时不再派生字体。
+ * - 批量渲染时画布可以纵向分成多个图块，一批验证码共用一块画布和一次 Graphics2D 设置（见 renderSheet）。
+ * - 缩放由 Downsampler 按 scale x scale 像素块取平均，直接写入输出图片的像素数组。
+ * - 软件渲染后端下，背景、内置干扰器和文字由 Rasterizer 直接写入像素数组，不经过 Java2D 的渲染管线。
+ * 渲染器不是线程安全的，同一时刻只能由一个线程使用。生产者通过 RendererPool 复用空闲的渲染器，
+ * 每次渲染开始时把 Graphics2D 的变换、裁剪、合成方式和线型恢复为初始值，上一次渲染的自定义组件不会影响下一次。
+ */
+final class CaptchaRenderer implements AutoCloseable {
+
+    // 一张拼图画布最多容纳的图块数量和像素数量（约 8 MB），超出时分成多张依次渲染
+    private static final int MAX_SHEET_TILES = 16;
+    private static final long MAX_SHEET_PIXELS = 1L << 21;
+    // 取字形轮廓时使用的设置：不做变换、开启抗锯齿、小数度量
+    private static final FontRenderContext OUTLINE_CONTEXT = new FontRenderContext(null, true, true);
+    private static final Stroke DEFAULT_STROKE = new BasicStroke();
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    private final CaptchaProducer producer;
+    private final int scale;
+    private final int width;
+    private final int height;
+    private final int realWidth;
+    private final int realHeight;
+    private final int tiles;
+
+    private final BufferedImage canvas;
+    private final Graphics2D g;
+    private final int[] pixels;
+    private final RenderContext context;
+    // 软件渲染后端的光栅化器，使用 Java2D 后端时为 null
+    private final Rasterizer rasterizer;
+
+    // 上一次使用的字体及其字形表，字体不变时不必再查找字形缓存
+    private ScaledFont lastFont;
+    private GlyphCache.GlyphSet lastGlyphs;
+    // 当前所处的渲染阶段，用于上报失败
+    private RenderStage stage;
+
+    CaptchaRenderer(CaptchaProducer producer) {
+        this(producer, 1);
+    }
+
+    /**
+     * @param tiles 画布上的图块数量，大于 1 时可以用 renderSheet 一次渲染多张
+     */
+    CaptchaRenderer(CaptchaProducer producer, int tiles) {
+        this.producer = producer;
+        RenderProfile profile = producer.getRenderProfile();
+        this.scale = profile.getScale();
+        this.width = producer.getWidth();
+        this.height = producer.getHeight();
+        this.realWidth = width * scale;
+        this.realHeight = height * scale;
+        this.tiles = tiles;
+
+        this.canvas = new BufferedImage(realWidth, realHeight * tiles, BufferedImage.TYPE_INT_ARGB);
+        this.g = canvas.createGraphics();
+        profile.applyHints(g);
+        this.pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        this.rasterizer = producer.getRenderBackend() == RenderBackend.SOFTWARE
+                ? new Rasterizer(pixels, 0, realWidth, realWidth, realHeight) : null;
+        this.context = tileContext(0, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * 按内存上限计算一次拼图渲染 count 张验证码时使用的图块数量
+     */
+    static int sheetTiles(CaptchaProducer producer, int count) {
+        int scale = producer.getRenderProfile().getScale();
+        long tilePixels = (long) producer.getWidth() * scale * producer.getHeight() * scale;
+        long byMemory = Math.max(1, MAX_SHEET_PIXELS / tilePixels);
+        return (int) Math.max(1, Math.min(Math.min(count, MAX_SHEET_TILES), byMemory));
+    }
+
+    int getTiles() {
+        return tiles;
+    }
+
+    /**
+     * 在复用的画布上渲染一张新的验证码（使用第一个图块）
+     * @param random 本次渲染的随机数来源，所有组件都从这里取随机数
+     */
+    Captcha render(IRandomSource random) {
+        if (tiles > 1) {
+            return renderSheet(new IRandomSource[]{random})[0];
+        }
+        // 默认的线程本地来源直接复用上下文，其他来源（固定种子）为本次渲染单独创建上下文
+        RenderContext ctx = random == context.getRandom() ? context : tileContext(0, random);
+        IMetricsListener metrics = producer.getMetricsListener();
+        long start = metrics == null ? 0L : System.nanoTime();
+        try {
+            resetGraphics();
+            String text = drawTile(ctx, metrics);
+
+            stage = RenderStage.DOWNSCALE;
+            long mark = metrics == null ? 0L : System.nanoTime();
+            BufferedImage image = downscale(0);
+            if (metrics != null) {
+                long now = System.nanoTime();
+                metrics.onStage(stage, now - mark);
+                metrics.onRendered(now - start);
+            }
+            return new Captcha(text, image, producer.getPngEncoder(), metrics);
+        } catch (Exception e) {
+            throw failure(metrics, e);
+        }
+    }
+
+    /**
+     * 拼图渲染：把一批验证码依次画在同一块画布的各个图块上，再逐块缩小到各自的输出图片。
+     * 一批验证码共用一块画布和一套渲染提示，结果与逐张渲染相同。
+     * @param randoms 每张验证码的随机数来源，数量不能超过图块数量
+     * @return 按顺序排列的验证码
+     */
+    Captcha[] renderSheet(IRandomSource[] randoms) {
+        int n = randoms.length;
+        if (n == 0 || n > tiles) {
+            throw new IllegalArgumentException("Sheet size must be between 1 and " + tiles + ".");
+        }
+        if (tiles == 1) {
+            return new Captcha[]{render(randoms[0])};
+        }
+        IMetricsListener metrics = producer.getMetricsListener();
+        String[] texts = new String[n];
+        long[] elapsed = metrics == null ? null : new long[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                long start = metrics == null ? 0L : System.nanoTime();
+                int top = i * realHeight;
+                resetGraphics();
+                g.translate(0, top);
+                g.setClip(0, 0, realWidth, realHeight);
+                try {
+                    texts[i] = drawTile(tileContext(top, randoms[i]), metrics);
+                } finally {
+                    g.setClip(null);
+                    g.translate(0, -top);
+                }
+                if (metrics != null) {
+                    elapsed[i] = System.nanoTime() - start;
+                }
+            }
+
+            stage = RenderStage.DOWNSCALE;
+            long mark = metrics == null ? 0L : System.nanoTime();
+            Captcha[] captchas = new Captcha[n];
+            for (int i = 0; i < n; i++) {
+                captchas[i] = new Captcha(texts[i], downscale(i * realHeight), producer.getPngEncoder(), metrics);
+            }
+            if (metrics != null) {
+                // 缩放的耗时平均分摊到每张验证码
+                long share = (System.nanoTime() - mark) / n;
+                for (int i = 0; i < n; i++) {
+                    metrics.onStage(RenderStage.DOWNSCALE, share);
+                    metrics.onRendered(elapsed[i] + share);
+                }
+            }
+            return captchas;
+        } catch (Exception e) {
+            throw failure(metrics, e);
+        }
+    }
+
+    /**
+     * 在一个图块上完成缩放之前的所有阶段：内容生成、背景和干扰、字体、文字、滤镜
+     * @return 验证码答案
+     */
+    private String drawTile(RenderContext ctx, IMetricsListener metrics) {
+        IRandomSource random = ctx.getRandom();
+        stage = RenderStage.GENERATE;
+        long mark = metrics == null ? 0L : System.nanoTime();
+        CaptchaContent content = producer.getGenerator().generate(random);
+        String text = content.getAnswer();
+        String drawText = content.getDrawText();
+        mark = stageDone(metrics, stage, mark);
+
+        stage = RenderStage.INTERFERE;
+        BackgroundCache backgrounds = producer.getBackgroundCache();
+        // 背景层的内容与种子无关，固定种子渲染时完整绘制
+        if (backgrounds != null && random == ThreadLocalRandomSource.getInstance()) {
+            backgrounds.drawTo(ctx);
+        } else {
+            if (ctx.getRasterizer() != null) {
+                ctx.getRasterizer().fillRect(0, 0, realWidth, realHeight, producer.getBackgroundColor().getRGB());
+            } else {
+                g.setColor(producer.getBackgroundColor());
+                g.fillRect(0, 0, realWidth, realHeight);
+            }
+            if (producer.getInterferer() != null) {
+                producer.getInterferer().draw(ctx);
+            }
+        }
+        mark = stageDone(metrics, stage, mark);
+
+        stage = RenderStage.FONT;
+        ScaledFont font = producer.getFontProvider().getScaledFont(scale, random);
+        if (font != lastFont) {
+            lastFont = font;
+            lastGlyphs = null;
+        }
+        mark = stageDone(metrics, stage, mark);
+
+        stage = RenderStage.TEXT;
+        int y = (realHeight - font.getHeight()) / 2 + font.getAscent();
+        boolean perCharColor = drawText.length() > 1 && drawText.length() == text.length();
+
+        GlyphCache glyphCache = producer.getGlyphCache();
+        boolean cached = false;
+        if (glyphCache != null && GlyphCache.supports(drawText)) {
+            if (lastGlyphs == null) {
+                lastGlyphs = glyphCache.forFont(font.getFont());
+            }
+            cached = drawCachedText(lastGlyphs, drawText, ctx.getOffset(), y, perCharColor, producer.getColorizer(), random);
+        }
+        if (!cached && ctx.getRasterizer() != null) {
+            drawOutlineText(ctx.getRasterizer(), font, drawText, y, perCharColor, producer.getColorizer(), random);
+        } else if (!cached) {
+            g.setFont(font.getFont());
+            FontMetrics fm = font.getMetrics();
+            int x = (realWidth - fm.stringWidth(drawText)) / 2;
+            if (perCharColor) {
+                // 逐字绘制时使用 ScaledFont 预先算好的字宽表，不为每个字符创建字符串或查询 FontMetrics
+                char[] chars = drawText.toCharArray();
+                for (int i = 0; i < chars.length; i++) {
+                    g.setColor(producer.getColorizer().nextColor(random));
+                    g.drawChars(chars, i, 1, x, y);
+                    x += font.charWidth(chars[i]);
+                }
+            } else {
+                g.setColor(producer.getColorizer().nextColor(random));
+                g.drawString(drawText, x, y);
+            }
+        }
+        mark = stageDone(metrics, stage, mark);
+
+        if (producer.getFilter() != null) {
+            stage = RenderStage.FILTER;
+            producer.getFilter().apply(ctx);
+            stageDone(metrics, stage, mark);
+        }
+        return text;
+    }
+
+    /**
+     * 把 Graphics2D 恢复为初始状态，清除上一次渲染中干扰器等组件留下的变换、裁剪、合成方式和线型
+     */
+    private void resetGraphics() {
+        g.setTransform(IDENTITY);
+        g.setClip(null);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setStroke(DEFAULT_STROKE);
+    }
+
+    /**
+     * 把从第 top 行开始的图块缩小为输出尺寸的图片
+     */
+    private BufferedImage downscale(int top) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] imagePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Downsampler.box(pixels, top * realWidth, realWidth, imagePixels, 0, width, width, height, scale);
+        return image;
+    }
+
+    private RenderContext tileContext(int top, IRandomSource random) {
+        int offset = top * realWidth;
+        return new RenderContext(g, realWidth, realHeight, scale, pixels, offset, realWidth, random,
+                rasterizer == null ? null : rasterizer.withOffset(offset));
+    }
+
+    private RuntimeException failure(IMetricsListener metrics, Exception e) {
+        if (metrics != null) {
+            metrics.onFailure(stage, e);
+        }
+        // 内容生成阶段的异常原样抛出，与之前的行为一致
+        if (stage == RenderStage.GENERATE && e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        return new CaptchaGenerationException("Failed to generate captcha image.", e);
+    }
+
+    private static long stageDone(IMetricsListener metrics, RenderStage stage, long mark) {
+        if (metrics == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        metrics.onStage(stage, now - mark);
+        return now;
+    }
+
+    /**
+     * 使用缓存的字形蒙版绘制文字，直接混合到画布像素中
+     * @return 字形表已满、有字符没有缓存时不绘制也不取颜色，返回 false
+     */
+    private boolean drawCachedText(GlyphCache.GlyphSet glyphs, String drawText, int offset,
+                                   int y, boolean perCharColor, IColorizer colorizer, IRandomSource random) {
+        int length = drawText.length();
+        GlyphCache.Glyph[] run = new GlyphCache.Glyph[length];
+        int textWidth = 0;
+        for (int i = 0; i < length; i++) {
+            run[i] = glyphs.get(drawText.charAt(i));
+            if (run[i] == null) {
+                return false;
+            }
+            textWidth += run[i].getAdvance();
+        }
+
+        int x = (realWidth - textWidth) / 2;
+        int argb = colorizer.nextRgb(random);
+        for (int i = 0; i < length; i++) {
+            if (perCharColor && i > 0) {
+                argb = colorizer.nextRgb(random);
+            }
+            run[i].drawTo(pixels, offset, realWidth, realWidth, realHeight, x, y, argb);
+            x += run[i].getAdvance();
+        }
+        return true;
+    }
+
+    /**
+     * 软件渲染后端：取出文字的字形轮廓，由光栅化器填充。每个字符颜色不同时逐个字形填充，
+     * 字符位置与 Java2D 后端逐字绘制时一致
+     */
+    private void drawOutlineText(Rasterizer raster, ScaledFont font, String drawText, int y,
+                                 boolean perCharColor, IColorizer colorizer, IRandomSource random) {
+        FontMetrics fm = font.getMetrics();
+        int x = (realWidth - fm.stringWidth(drawText)) / 2;
+        if (!perCharColor) {
+            int argb = colorizer.nextRgb(random);
+            raster.fill(font.getFont().createGlyphVector(OUTLINE_CONTEXT, drawText).getOutline(x, y), argb);
+            return;
+        }
+        for (int i = 0; i < drawText.length(); i++) {
+            int argb = colorizer.nextRgb(random);
+            char c = drawText.charAt(i);
+            GlyphVector glyph = font.getFont().createGlyphVector(OUTLINE_CONTEXT, new char[]{c});
+            raster.fill(glyph.getOutline(x, y), argb);
+            x += font.charWidth(c);
+        }
+    }
+
+    @Override
+    public void close() {
+        g.dispose();
+    }
+}
@@ -0,0 +1,489 @@
+package com.mazepeng.kaptcha;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 验证码答案存储
+ * <p>
+ * 把验证码的答案按调用方提供的 id（如会话 id、请求 id）保存起来，并在校验时一次性取出：
+ * - 每个答案只能校验一次，无论对错，校验后立即删除，防止同一个验证码被反复尝试。
+ * - 每个条目都有自己的过期时间，过期的条目校验失败。
+ * - 条目总数有硬上限，超出时淘汰最早过期的条目，内存占用与 maxEntries 成正比，不会因为刷量无限增长。
+ * - 按 id 的哈希分成多个分段，每个分段有独立的锁、哈希表和时间轮，不存在全局锁和全表扫描。
+ *   过期条目在每次访问分段时按时间轮槽位增量清理。
+ * - 答案使用常量时间比较。
+ */
+public class CaptchaStore {
+
+    private final Supplier<Captcha> source;
+    private final long defaultTtlNanos;
+    private final boolean caseSensitive;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    private CaptchaStore(CaptchaStore.Builder builder) {
+        this.source = builder.source;
+        this.defaultTtlNanos = builder.ttl.toNanos();
+        this.caseSensitive = builder.caseSensitive;
+        this.clock = builder.clock;
+
+        int stripeCount = ceilingPowerOfTwo(builder.concurrencyLevel);
+        int perStripe = Math.max(1, (builder.maxEntries + stripeCount - 1) / stripeCount);
+        int slots = ceilingPowerOfTwo(builder.wheelSlots);
+        long tickNanos = builder.tick.toNanos();
+        long now = clock.getAsLong();
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe, slots, tickNanos, now);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * 生成一个新的验证码，并以默认的有效期保存其答案
+     * @param id 调用方用来关联该验证码的唯一标识
+     * @return 新生成的验证码，用于输出图片
+     */
+    public Captcha issue(String id) {
+        return issue(id, source.get(), defaultTtlNanos);
+    }
+
+    /**
+     * 生成一个新的验证码，并以指定的有效期保存其答案
+     */
+    public Captcha issue(String id, Duration ttl) {
+        return issue(id, source.get(), ttlNanos(ttl));
+    }
+
+    /**
+     * 保存一个已有验证码（例如从其他来源取得的）的答案
+     */
+    public Captcha issue(String id, Captcha captcha) {
+        return issue(id, captcha, defaultTtlNanos);
+    }
+
+    private Captcha issue(String id, Captcha captcha, long ttlNanos) {
+        Objects.requireNonNull(id);
+        put(id, captcha.getText(), ttlNanos);
+        return captcha;
+    }
+
+    /**
+     * 直接保存一个答案，同一个 id 已有的答案会被替换
+     */
+    public void put(String id, String answer, Duration ttl) {
+        put(Objects.requireNonNull(id), Objects.requireNonNull(answer), ttlNanos(ttl));
+    }
+
+    private void put(String id, String answer, long ttlNanos) {
+        byte[] normalized = normalize(answer);
+        long now = clock.getAsLong();
+        stripeFor(id).put(id, normalized, now + ttlNanos, now);
+        issued.increment();
+    }
+
+    /**
+     * 校验答案。无论结果如何，该 id 对应的答案都会被删除，只能校验一次。
+     * @param id     签发时使用的标识
+     * @param answer 用户输入的答案
+     * @return 答案存在、未过期且匹配时返回 true
+     */
+    public boolean verify(String id, String answer) {
+        if (id == null) {
+            rejected.increment();
+            return false;
+        }
+        long now = clock.getAsLong();
+        Entry entry = stripeFor(id).remove(id, now);
+        if (entry == null) {
+            rejected.increment();
+            return false;
+        }
+        if (entry.deadline - now <= 0) {
+            expired.increment();
+            rejected.increment();
+            return false;
+        }
+        boolean match = answer != null && MessageDigest.isEqual(entry.answer, normalize(answer));
+        if (match) {
+            passed.increment();
+        } else {
+            rejected.increment();
+        }
+        return match;
+    }
+
+    /**
+     * 主动作废某个 id 对应的答案
+     * @return 是否确实删除了一个条目
+     */
+    public boolean invalidate(String id) {
+        return id != null && stripeFor(id).remove(id, clock.getAsLong()) != null;
+    }
+
+    /**
+     * 立即清理所有分段中已过期的条目。平时清理在访问时增量进行，通常不需要调用。
+     */
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        for (Stripe stripe : stripes) {
+            stripe.purge(now);
+        }
+    }
+
+    /**
+     * @return 当前保存的条目数量（可能包含尚未被清理的过期条目）
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return 签发（保存）的答案数量
+     */
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    /**
+     * @return 校验通过的次数
+     */
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    /**
+     * @return 校验未通过的次数（包含不存在、已过期和答案错误）
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 因为过期而被清理或校验失败的条目数量
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return 因为达到容量上限而被提前淘汰的条目数量
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    private Stripe stripeFor(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & stripeMask];
+    }
+
+    private byte[] normalize(String answer) {
+        String s = caseSensitive ? answer : answer.toUpperCase(Locale.ROOT);
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int ceilingPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(Math.min(n, 1 << 30) - 1) << 1;
+    }
+
+    private static long ttlNanos(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be greater than 0.");
+        }
+        return ttl.toNanos();
+    }
+
+    /**
+     * 一个条目，同时是所在时间轮槽位的双向链表节点
+     */
+    private static final class Entry {
+        final String id;
+        final byte[] answer;
+        final long deadline;
+        int slot;
+        Entry prev;
+        Entry next;
+
+        Entry(String id, byte[] answer, long deadline) {
+            this.id = id;
+            this.answer = answer;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * 一个分段：哈希表 + 时间轮，所有操作都在分段锁内完成
+     * <p>
+     * 时间轮的每个槽位对应一个 tick，条目按过期时间挂在对应的槽位上。
+     * 每次访问分段时，把上次访问以来经过的槽位清理一遍；过期时间超过一圈的条目留在槽位中，等到下一圈再检查。
+     */
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Entry> entries;
+        private final int capacity;
+        private final Entry[] wheel;
+        private final int wheelMask;
+        private final long tickNanos;
+        private final long origin;
+        // 已经清理过的最后一个 tick
+        private long sweptTick;
+
+        Stripe(int capacity, int slots, long tickNanos, long origin) {
+            this.capacity = capacity;
+            this.entries = new HashMap<>(Math.min(capacity, 1 << 16) * 4 / 3 + 1);
+            this.wheel = new Entry[slots];
+            this.wheelMask = slots - 1;
+            this.tickNanos = tickNanos;
+            this.origin = origin;
+        }
+
+        void put(String id, byte[] answer, long deadline, long now) {
+            Entry entry = new Entry(id, answer, deadline);
+            lock.lock();
+            try {
+                advance(now);
+                Entry previous = entries.put(id, entry);
+                if (previous != null) {
+                    unlink(previous);
+                } else if (entries.size() > capacity) {
+                    evictSoonest();
+                }
+                link(entry, Math.max(tickOf(deadline), sweptTick + 1));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Entry remove(String id, long now) {
+            lock.lock();
+            try {
+                advance(now);
+                Entry entry = entries.remove(id);
+                if (entry != null) {
+                    unlink(entry);
+                }
+                return entry;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void purge(long now) {
+            lock.lock();
+            try {
+                advance(now);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 清理从上次清理到当前 tick 之间经过的槽位，最多清理一整圈
+         */
+        private void advance(long now) {
+            long nowTick = tickOf(now);
+            if (nowTick <= sweptTick) {
+                return;
+            }
+            long from = Math.max(sweptTick + 1, nowTick - wheelMask);
+            int removed = 0;
+            for (long t = from; t <= nowTick; t++) {
+                removed += sweepSlot((int) (t & wheelMask), now);
+            }
+            sweptTick = nowTick;
+            if (removed > 0) {
+                expired.add(removed);
+            }
+        }
+
+        private int sweepSlot(int slot, long now) {
+            int removed = 0;
+            Entry e = wheel[slot];
+            while (e != null) {
+                Entry next = e.next;
+                if (e.deadline - now <= 0) {
+                    entries.remove(e.id);
+                    unlink(e);
+                    removed++;
+                }
+                e = next;
+            }
+            return removed;
+        }
+
+        /**
+         * 容量已满时，从下一个要清理的槽位开始找到第一个非空槽位，淘汰其中的一个条目
+         */
+        private void evictSoonest() {
+            for (int i = 1; i <= wheel.length; i++) {
+                Entry e = wheel[(int) ((sweptTick + i) & wheelMask)];
+                if (e != null) {
+                    entries.remove(e.id);
+                    unlink(e);
+                    evicted.increment();
+                    return;
+                }
+            }
+        }
+
+        private long tickOf(long nanos) {
+            return (nanos - origin) / tickNanos;
+        }
+
+        private void link(Entry entry, long tick) {
+            int slot = (int) (tick & wheelMask);
+            entry.slot = slot;
+            Entry head = wheel[slot];
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            }
+            wheel[slot] = entry;
+        }
+
+        private void unlink(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                wheel[entry.slot] = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+        }
+    }
+
+    /**
+     * Builder 类，用于配置答案存储
+     */
+    public static class Builder {
+
+        final Supplier<Captcha> source;
+        Duration ttl = Duration.ofMinutes(5);
+        int maxEntries = 100_000;
+        int concurrencyLevel = 16;
+        Duration tick = Duration.ofSeconds(1);
+        int wheelSlots = 512;
+        boolean caseSensitive = false;
+        LongSupplier clock = System::nanoTime;
+
+        /**
+         * @param producer issue(id) 时用来生成验证码的生产者
+         */
+        public Builder(CaptchaProducer producer) {
+            Objects.requireNonNull(producer);
+            this.source = producer::nextCaptcha;
+        }
+
+        /**
+         * @param pool issue(id) 时从该验证码池中取用验证码
+         */
+        public Builder(CaptchaPool pool) {
+            Objects.requireNonNull(pool);
+            this.source = pool::nextCaptcha;
+        }
+
+        /**
+         * 默认有效期，默认为 5 分钟
+         */
+        public Builder ttl(Duration ttl) {
+            this.ttl = Objects.requireNonNull(ttl);
+            return this;
+        }
+
+        /**
+         * 最多保存的条目数量，超出时淘汰最早过期的条目，默认为 100000
+         */
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * 分段数量，向上取整为 2 的幂，默认为 16
+         */
+        public Builder concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * 时间轮的精度（每个槽位的时长）和槽位数量（向上取整为 2 的幂），默认为 1 秒、512 个槽位。
+         * 一圈的时长最好不小于常用的有效期，否则长有效期的条目会在每一圈都被检查一次。
+         */
+        public Builder wheel(Duration tick, int slots) {
+            this.tick = Objects.requireNonNull(tick);
+            this.wheelSlots = slots;
+            return this;
+        }
+
+        /**
+         * 校验时是否区分大小写，默认不区分
+         */
+        public Builder caseSensitive(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            return this;
+        }
+
+        /**
+         * 时间来源（纳秒），仅供测试使用
+         */
+        Builder clock(LongSupplier clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        /**
+         * 构建答案存储
+         * @return 一个可以并发使用的 CaptchaStore 实例
+         */
+        public CaptchaStore build() {
+            ttlNanos(ttl);
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Max entries must be greater than 0.");
+            }
+            if (concurrencyLevel <= 0) {
+                throw new IllegalArgumentException("Concurrency level must be greater than 0.");
+            }
+            if (tick.toNanos() <= 0 || wheelSlots <= 0) {
+                throw new IllegalArgumentException("Wheel tick and slots must be greater than 0.");
+            }
+            return new CaptchaStore(this);
+        }
+    }
+}
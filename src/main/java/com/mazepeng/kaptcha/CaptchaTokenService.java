@@ -0,0 +1,406 @@
+package com.mazepeng.kaptcha;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 无状态的验证码令牌
+ * <p>
+ * 为验证码签发一个不透明的令牌，令牌中包含过期时间、随机 nonce 和两个 HMAC 标签：
+ * - 头部标签以密钥对 (版本, 密钥 id, 过期时间, nonce) 计算，是令牌本身的签名。
+ * - 答案标签以密钥对头部和答案计算，相当于用 nonce 加盐、用密钥保护的答案摘要。
+ * 校验时先验证头部标签，伪造的令牌在接触重放过滤器之前就被拒绝，不会占用过滤器的容量；之后才记录 nonce 并比较答案。
+ * 只要各节点配置了相同的密钥，任何节点都可以独立校验，不需要共享存储。
+ * - 支持密钥轮换：新令牌使用当前密钥签名，旧密钥在退役前仍可用于校验。
+ * - 本地的重放过滤器记录已经校验过的 nonce，同一个签名有效的令牌在本节点只能校验一次，无论答案对错。
+ *   多节点部署时，同一令牌在不同节点上的重放需要由负载均衡的会话保持或较短的有效期来限制。
+ * - 校验过程使用线程本地的缓冲区，不分配临时数组，标签使用常量时间比较。
+ */
+public class CaptchaTokenService {
+
+    private static final byte VERSION = 2;
+    // 令牌结构：版本(1) + 密钥 id(1) + 过期时间(8) + nonce(16) + 头部标签(12) + 答案标签(16)
+    private static final int HEADER_LENGTH = 26;
+    private static final int NONCE_OFFSET = 10;
+    private static final int NONCE_LENGTH = 16;
+    private static final int HEADER_TAG_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int TAG_OFFSET = HEADER_LENGTH + HEADER_TAG_LENGTH;
+    private static final int TOKEN_BYTES = TAG_OFFSET + TAG_LENGTH;
+    // 答案标签在头部之后、答案之前加入的域分隔字节，与头部标签的输入区分开
+    private static final byte ANSWER_DOMAIN = 1;
+    private static final int TOKEN_CHARS = TOKEN_BYTES / 3 * 4;
+    private static final int MIN_SECRET_LENGTH = 16;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final long ttlMillis;
+    private final boolean caseSensitive;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicReferenceArray<SigningKey> keys = new AtomicReferenceArray<>(256);
+    private volatile SigningKey currentKey;
+    private final ReplayFilter replayFilter;
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[TOKEN_BYTES + 32]);
+
+    private final LongAdder signed = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder forged = new LongAdder();
+
+    private CaptchaTokenService(CaptchaTokenService.Builder builder) {
+        this.ttlMillis = builder.ttl.toMillis();
+        this.caseSensitive = builder.caseSensitive;
+        this.clock = builder.clock;
+        this.replayFilter = new ReplayFilter(builder.expectedTokens, ttlMillis, clock.getAsLong());
+        for (SigningKey key : builder.keys) {
+            if (key != null) {
+                keys.set(key.id, key);
+            }
+        }
+        this.currentKey = builder.keys[builder.currentKeyId];
+    }
+
+    /**
+     * 为验证码签发令牌，令牌可以和图片一起返回给客户端
+     */
+    public String sign(Captcha captcha) {
+        return sign(captcha.getText());
+    }
+
+    /**
+     * 为一个答案签发令牌
+     */
+    public String sign(String answer) {
+        Objects.requireNonNull(answer);
+        SigningKey key = currentKey;
+        // HMAC-SHA256 输出 32 个字节，头部标签保留前 12 个，答案标签保留前 16 个
+        byte[] raw = new byte[TAG_OFFSET + 32];
+        raw[0] = VERSION;
+        raw[1] = (byte) key.id;
+        writeLong(raw, 2, clock.getAsLong() + ttlMillis);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        System.arraycopy(nonce, 0, raw, NONCE_OFFSET, NONCE_LENGTH);
+        computeHeaderTag(key, raw, raw, HEADER_LENGTH);
+        computeTag(key, raw, answer, raw, TAG_OFFSET);
+        signed.increment();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(raw, TOKEN_BYTES));
+    }
+
+    /**
+     * 校验令牌和用户输入的答案。签名有效且未过期的令牌在本节点只能校验一次，无论答案是否正确。
+     * @return 令牌有效、未过期、未被使用过且答案匹配时返回 true
+     */
+    public boolean verify(String token, String answer) {
+        if (token == null || answer == null || token.length() != TOKEN_CHARS) {
+            rejected.increment();
+            return false;
+        }
+        byte[] buf = scratch.get();
+        if (!decode(token, buf) || buf[0] != VERSION) {
+            rejected.increment();
+            return false;
+        }
+        SigningKey key = keys.get(buf[1] & 0xFF);
+        if (key == null) {
+            rejected.increment();
+            return false;
+        }
+        // 先验证头部签名，伪造的令牌不能写入重放过滤器
+        computeHeaderTag(key, buf, buf, TOKEN_BYTES);
+        if (!equal(buf, HEADER_LENGTH, buf, TOKEN_BYTES, HEADER_TAG_LENGTH)) {
+            forged.increment();
+            rejected.increment();
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (readLong(buf, 2) - now <= 0) {
+            expired.increment();
+            rejected.increment();
+            return false;
+        }
+        if (!replayFilter.firstUse(readLong(buf, NONCE_OFFSET), readLong(buf, NONCE_OFFSET + 8), now)) {
+            replayed.increment();
+            rejected.increment();
+            return false;
+        }
+        computeTag(key, buf, answer, buf, TOKEN_BYTES);
+        if (equal(buf, TAG_OFFSET, buf, TOKEN_BYTES, TAG_LENGTH)) {
+            passed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 添加一个新密钥并立即用于签发，之前的密钥仍然可以用于校验，直到调用 retireKey
+     * @param keyId  密钥 id（0 ~ 255），各节点需要一致
+     * @param secret 密钥内容，至少 16 个字节
+     */
+    public void rotateKey(int keyId, byte[] secret) {
+        SigningKey key = new SigningKey(keyId, secret);
+        keys.set(keyId, key);
+        currentKey = key;
+    }
+
+    /**
+     * 停止接受某个密钥签发的令牌。当前用于签发的密钥不能退役。
+     */
+    public void retireKey(int keyId) {
+        if (currentKey.id == keyId) {
+            throw new IllegalStateException("Cannot retire the current signing key.");
+        }
+        keys.set(checkKeyId(keyId), null);
+    }
+
+    /**
+     * @return 签发的令牌数量
+     */
+    public long getSignedCount() {
+        return signed.sum();
+    }
+
+    /**
+     * @return 校验通过的次数
+     */
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    /**
+     * @return 校验未通过的次数（包含格式错误、签名错误、过期、重放和答案错误）
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 因为过期而未通过的次数
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return 因为令牌已被使用过而未通过的次数
+     */
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * @return 因为令牌格式正确但签名错误（伪造或被篡改）而未通过的次数
+     */
+    public long getForgedCount() {
+        return forged.sum();
+    }
+
+    /**
+     * 计算头部标签并写入 out[offset, offset + 32)
+     */
+    private static void computeHeaderTag(SigningKey key, byte[] header, byte[] out, int offset) {
+        Mac mac = key.mac.get();
+        mac.update(header, 0, HEADER_LENGTH);
+        doFinal(mac, out, offset);
+    }
+
+    /**
+     * 计算答案标签并写入 out[offset, offset + 32)，答案按字符逐个送入 HMAC，不生成中间数组
+     */
+    private void computeTag(SigningKey key, byte[] header, String answer, byte[] out, int offset) {
+        Mac mac = key.mac.get();
+        mac.update(header, 0, HEADER_LENGTH);
+        mac.update(ANSWER_DOMAIN);
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (!caseSensitive) {
+                c = Character.toUpperCase(c);
+            }
+            mac.update((byte) (c >>> 8));
+            mac.update((byte) c);
+        }
+        doFinal(mac, out, offset);
+    }
+
+    private static void doFinal(Mac mac, byte[] out, int offset) {
+        try {
+            mac.doFinal(out, offset);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 常量时间比较
+     */
+    private static boolean equal(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= a[aOffset + i] ^ b[bOffset + i];
+        }
+        return diff == 0;
+    }
+
+    private static boolean decode(String token, byte[] out) {
+        int bits = 0;
+        for (int i = 0, o = 0; i < TOKEN_CHARS; i++) {
+            char c = token.charAt(i);
+            int v = c < 128 ? DECODE[c] : -1;
+            if (v < 0) {
+                return false;
+            }
+            bits = bits << 6 | v;
+            if ((i & 3) == 3) {
+                out[o++] = (byte) (bits >> 16);
+                out[o++] = (byte) (bits >> 8);
+                out[o++] = (byte) bits;
+                bits = 0;
+            }
+        }
+        return true;
+    }
+
+    private static void writeLong(byte[] b, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = v << 8 | (b[off + i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static int checkKeyId(int keyId) {
+        if (keyId < 0 || keyId > 255) {
+            throw new IllegalArgumentException("Key id must be between 0 and 255.");
+        }
+        return keyId;
+    }
+
+    /**
+     * 一个签名密钥，每个线程持有自己的 Mac 实例
+     */
+    private static final class SigningKey {
+        final int id;
+        final ThreadLocal<Mac> mac;
+
+        SigningKey(int id, byte[] secret) {
+            this.id = checkKeyId(id);
+            if (secret == null || secret.length < MIN_SECRET_LENGTH) {
+                throw new IllegalArgumentException("Secret must be at least 16 bytes.");
+            }
+            SecretKeySpec spec = new SecretKeySpec(secret.clone(), ALGORITHM);
+            this.mac = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac m = Mac.getInstance(ALGORITHM);
+                    m.init(spec);
+                    return m;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(ALGORITHM + " is not available.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Builder 类，用于配置令牌服务
+     */
+    public static class Builder {
+
+        final SigningKey[] keys = new SigningKey[256];
+        int currentKeyId = -1;
+        Duration ttl = Duration.ofMinutes(5);
+        int expectedTokens = 1 << 20;
+        boolean caseSensitive = false;
+        LongSupplier clock = System::currentTimeMillis;
+
+        /**
+         * 添加一个密钥。最后添加的密钥用于签发，所有添加的密钥都可用于校验。
+         * @param keyId  密钥 id（0 ~ 255）
+         * @param secret 密钥内容，至少 16 个字节
+         */
+        public Builder key(int keyId, byte[] secret) {
+            SigningKey key = new SigningKey(keyId, secret);
+            keys[keyId] = key;
+            currentKeyId = keyId;
+            return this;
+        }
+
+        /**
+         * 令牌有效期，同时也是重放过滤器的窗口长度，默认为 5 分钟
+         */
+        public Builder ttl(Duration ttl) {
+            this.ttl = Objects.requireNonNull(ttl);
+            return this;
+        }
+
+        /**
+         * 每个有效期内预计校验的令牌数量，用于确定重放过滤器的大小，默认约 100 万
+         */
+        public Builder expectedTokens(int expectedTokens) {
+            this.expectedTokens = expectedTokens;
+            return this;
+        }
+
+        /**
+         * 校验时是否区分大小写，默认不区分
+         */
+        public Builder caseSensitive(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            return this;
+        }
+
+        /**
+         * 时间来源（毫秒），仅供测试使用
+         */
+        Builder clock(LongSupplier clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        /**
+         * 构建令牌服务
+         * @return 一个可以并发使用的 CaptchaTokenService 实例
+         */
+        public CaptchaTokenService build() {
+            if (currentKeyId < 0) {
+                throw new IllegalArgumentException("At least one key is required.");
+            }
+            if (ttl.toMillis() <= 0) {
+                throw new IllegalArgumentException("TTL must be greater than 0.");
+            }
+            if (expectedTokens <= 0) {
+                throw new IllegalArgumentException("Expected tokens must be greater than 0.");
+            }
+            return new CaptchaTokenService(this);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.LoadLevel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应降级控制器
+ * <p>
+ * 跟踪渲染耗时的指数移动平均（EWMA）和正在排队或渲染中的请求数，超出预算时逐级降低渲染档位，负载回落后逐级恢复：
+ * - 降级：耗时平均值超过预算，或排队数量超过上限。切换档位后重新累计样本，至少收集若干个样本才会再次降级。
+ * - 恢复：按更高档位估算的耗时低于预算的一半、排队数量不超过上限的一半，并且距离上次切换已经超过保持时间。
+ * 不同档位的渲染开销相差数倍，当前档位的耗时不能直接和预算比较。每次降级时记录降级前的平均值，
+ * 并在新档位收集到足够样本后记录到达时的平均值，两者之比就是相邻两档的开销比；恢复时用当前平均值乘以这个比值来估算。
+ * 恢复条件比降级条件严格得多，并且有保持时间，档位不会在阈值附近来回抖动。
+ * 所有状态都是原子变量，多个线程同时记录样本时不加锁。
+ */
+final class LoadShedder {
+
+    // 切换档位后做出下一次决定之前至少需要的样本数
+    private static final int MIN_SAMPLES = 8;
+    // EWMA 的平滑系数为 1 / 2^EWMA_SHIFT
+    private static final int EWMA_SHIFT = 3;
+    private static final LoadLevel[] LEVELS = LoadLevel.values();
+
+    private final long budgetNanos;
+    private final int maxPending;
+    private final long holdNanos;
+    private final LongSupplier clock;
+    private final IMetricsListener listener;
+
+    private final AtomicInteger level = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger samples = new AtomicInteger();
+    private final AtomicLong average = new AtomicLong();
+    // departed[i]：最近一次从档位 i 降级时的平均耗时；arrived[i]：最近一次降级到档位 i 后首次做决定时的平均耗时
+    private final AtomicLongArray departed = new AtomicLongArray(LEVELS.length);
+    private final AtomicLongArray arrived = new AtomicLongArray(LEVELS.length);
+    private volatile long changedAt;
+    private volatile boolean steppedDown;
+
+    /**
+     * @param budgetNanos 单张验证码渲染耗时的预算（纳秒）
+     * @param maxPending  允许同时排队或渲染中的请求数
+     * @param holdNanos   恢复到更高档位之前至少保持当前档位的时间（纳秒）
+     * @param clock       纳秒时钟
+     * @param listener    档位变化时通知的监听器，可以为 null
+     */
+    LoadShedder(long budgetNanos, int maxPending, long holdNanos, LongSupplier clock, IMetricsListener listener) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Latency budget must be greater than 0.");
+        }
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("Max pending count must be greater than 0.");
+        }
+        if (holdNanos < 0) {
+            throw new IllegalArgumentException("Hold time must not be negative.");
+        }
+        this.budgetNanos = budgetNanos;
+        this.maxPending = maxPending;
+        this.holdNanos = holdNanos;
+        this.clock = clock;
+        this.listener = listener;
+        this.changedAt = clock.getAsLong();
+    }
+
+    LoadLevel getLevel() {
+        return LEVELS[level.get()];
+    }
+
+    /**
+     * @return 正在排队或渲染中的请求数
+     */
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * 一个请求开始排队或渲染
+     */
+    void enter() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * 请求没有被执行（如执行器拒绝了任务），不记录样本
+     */
+    void cancel() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * 一个请求渲染结束，记录耗时并在需要时切换档位
+     * @param nanos 渲染耗时（纳秒）
+     */
+    void exit(long nanos) {
+        // 除当前请求之外仍在排队或渲染中的请求数
+        int others = pending.decrementAndGet();
+        long avg = record(nanos);
+        int count = samples.incrementAndGet();
+        if (count < MIN_SAMPLES) {
+            return;
+        }
+        int current = level.get();
+        if (count == MIN_SAMPLES && steppedDown) {
+            arrived.set(current, avg);
+        }
+        if ((avg > budgetNanos || others >= maxPending) && current < LEVELS.length - 1) {
+            departed.set(current, avg);
+            change(current, current + 1, clock.getAsLong());
+        } else if (current > 0 && projectUp(current, avg) < budgetNanos / 2 && others <= maxPending / 2) {
+            long now = clock.getAsLong();
+            if (now - changedAt >= holdNanos) {
+                change(current, current - 1, now);
+            }
+        }
+    }
+
+    /**
+     * 估算在高一档位下的平均耗时：当前平均值乘以降级前后测得的开销比，开销比至少为 1
+     */
+    private long projectUp(int current, long avg) {
+        long before = departed.get(current - 1);
+        long after = arrived.get(current);
+        if (before <= after || after <= 0) {
+            return avg;
+        }
+        return (long) (avg * ((double) before / after));
+    }
+
+    private long record(long nanos) {
+        while (true) {
+            long old = average.get();
+            // 切换档位后的第一个样本直接作为平均值
+            long updated = Math.max(1, old == 0 ? nanos : old + ((nanos - old) >> EWMA_SHIFT));
+            if (average.compareAndSet(old, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    private void change(int from, int to, long now) {
+        // 并发时只有一个线程能完成切换
+        if (!level.compareAndSet(from, to)) {
+            return;
+        }
+        changedAt = now;
+        steppedDown = to > from;
+        average.set(0);
+        samples.set(0);
+        if (listener != null) {
+            listener.onLoadLevelChanged(LEVELS[from], LEVELS[to]);
+        }
+    }
+}
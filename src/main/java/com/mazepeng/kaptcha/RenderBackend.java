@@ -0,0 +1,14 @@
+package com.mazepeng.kaptcha;
+
+/**
+ * 渲染后端
+ * <p>
+ * - JAVA2D：背景、干扰线和文字都通过 Graphics2D 绘制（默认）。
+ * - SOFTWARE：内置的干扰器、背景填充和文字直接由 Rasterizer 光栅化到画布的像素数组中，不经过 Java2D 的渲染管线，
+ *   没有管线内部的锁和逐次调用开销，在无头服务器上随核数线性扩展。自定义干扰器仍然可以使用 Graphics2D。
+ * 两种后端的抗锯齿算法不同，同一个种子在两种后端下生成的图片不完全相同。
+ */
+public enum RenderBackend {
+    JAVA2D,
+    SOFTWARE
+}
@@ -0,0 +1,103 @@
+package com.mazepeng.kaptcha;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 渲染器池
+ * <p>
+ * 每个渲染器持有一块超采样画布（默认尺寸约 170 KB）和设置好渲染提示的 Graphics2D，逐次创建会产生大量短命的大对象。
+ * 渲染器池按生产者缓存有限数量的空闲渲染器，画布、渲染提示和字形表在多次渲染之间复用：
+ * - 单张渲染器和拼图渲染器分开缓存，拼图渲染器统一使用最大图块数量，可以渲染任意张数的一批。
+ * - 空闲槽位用 CAS 存取，没有锁，也不依赖 ThreadLocal，在虚拟线程上不会钉住载体线程，也不会为每个线程保留一块画布。
+ * - 槽位满时归还的渲染器直接释放，池中的画布数量有上限；渲染失败的渲染器不再放回池中。
+ */
+final class RendererPool {
+
+    private final CaptchaProducer producer;
+    private final int sheetTiles;
+    private final AtomicReferenceArray<CaptchaRenderer> singles;
+    private final AtomicReferenceArray<CaptchaRenderer> sheets;
+
+    /**
+     * @param producer 渲染器所属的生产者
+     * @param size     每种渲染器最多缓存的空闲数量，0 表示不缓存
+     */
+    RendererPool(CaptchaProducer producer, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Renderer pool size must not be negative.");
+        }
+        this.producer = producer;
+        this.sheetTiles = CaptchaRenderer.sheetTiles(producer, Integer.MAX_VALUE);
+        this.singles = new AtomicReferenceArray<>(size);
+        this.sheets = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * 取得一个单张渲染器，池中没有空闲的渲染器时新建
+     */
+    CaptchaRenderer acquire() {
+        CaptchaRenderer renderer = poll(singles);
+        return renderer != null ? renderer : new CaptchaRenderer(producer);
+    }
+
+    /**
+     * 取得一个至少能容纳 count 个图块的拼图渲染器
+     */
+    CaptchaRenderer acquireSheet(int count) {
+        if (count <= 1) {
+            return acquire();
+        }
+        CaptchaRenderer renderer = poll(sheets);
+        if (renderer != null) {
+            return renderer;
+        }
+        // 不缓存时按实际数量分配，避免为一小批分配整块最大画布
+        return new CaptchaRenderer(producer, sheets.length() == 0 ? CaptchaRenderer.sheetTiles(producer, count) : sheetTiles);
+    }
+
+    /**
+     * 归还渲染器，池已满时释放
+     */
+    void release(CaptchaRenderer renderer) {
+        AtomicReferenceArray<CaptchaRenderer> slots = renderer.getTiles() == 1 ? singles
+                : renderer.getTiles() == sheetTiles ? sheets : null;
+        if (slots == null || !offer(slots, renderer)) {
+            renderer.close();
+        }
+    }
+
+    private static CaptchaRenderer poll(AtomicReferenceArray<CaptchaRenderer> slots) {
+        int n = slots.length();
+        if (n == 0) {
+            return null;
+        }
+        // 从随机位置开始扫描，并发时各线程分散到不同的槽位上
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            if (slots.get(index) != null) {
+                CaptchaRenderer renderer = slots.getAndSet(index, null);
+                if (renderer != null) {
+                    return renderer;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean offer(AtomicReferenceArray<CaptchaRenderer> slots, CaptchaRenderer renderer) {
+        int n = slots.length();
+        if (n == 0) {
+            return false;
+        }
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, renderer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
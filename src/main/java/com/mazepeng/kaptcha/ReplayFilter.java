@@ -0,0 +1,105 @@
+package com.mazepeng.kaptcha;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌重放过滤器
+ * <p>
+ * 由两代布隆过滤器组成，每一代覆盖一个时间窗口（等于令牌的有效期），窗口结束时丢弃较老的一代。
+ * 一个 nonce 被记录后，至少在一个完整窗口内都能被识别出来，而令牌在这段时间内早已过期。
+ * - 内存固定：每一代 bitsPerGeneration 个比特，与令牌数量无关。
+ * - 存在很小的误判率：从未使用过的令牌可能被当作重放拒绝（容量内约 1%），但已使用的令牌一定会被拒绝。
+ */
+final class ReplayFilter {
+
+    // 每个 nonce 设置的比特数，配合每个元素约 10 个比特，容量内误判率约 1%
+    private static final int PROBES = 7;
+    private static final int LOCK_STRIPES = 64;
+
+    private final long windowMillis;
+    private final int bitMask;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile long generationStart;
+
+    /**
+     * @param expectedPerWindow 每个窗口内预计校验的令牌数量
+     * @param windowMillis      窗口长度（毫秒）
+     * @param now               当前时间（毫秒）
+     */
+    ReplayFilter(int expectedPerWindow, long windowMillis, long now) {
+        long wanted = Math.max(64L, (long) expectedPerWindow * 10);
+        int bits = (int) Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+        this.bitMask = bits - 1;
+        this.windowMillis = windowMillis;
+        this.current = new AtomicLongArray(bits >>> 6);
+        this.previous = new AtomicLongArray(bits >>> 6);
+        this.generationStart = now;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 记录一个 nonce
+     * @param h1  nonce 的前 8 个字节
+     * @param h2  nonce 的后 8 个字节
+     * @param now 当前时间（毫秒）
+     * @return nonce 第一次出现时返回 true，已经出现过（或被误判）时返回 false
+     */
+    boolean firstUse(long h1, long h2, long now) {
+        if (now - generationStart >= windowMillis) {
+            rotate(now);
+        }
+        // 同一个 nonce 总是落在同一个锁上，保证并发提交同一个令牌时只有一个能通过
+        synchronized (locks[(int) (h1 & (LOCK_STRIPES - 1))]) {
+            AtomicLongArray cur = current;
+            if (contains(cur, h1, h2) || contains(previous, h1, h2)) {
+                return false;
+            }
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (int) ((h1 + i * h2) & bitMask);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long old;
+                do {
+                    old = cur.get(word);
+                } while ((old & mask) == 0 && !cur.compareAndSet(word, old, old | mask));
+            }
+            return true;
+        }
+    }
+
+    private boolean contains(AtomicLongArray bits, long h1, long h2) {
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (int) ((h1 + i * h2) & bitMask);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void rotate(long now) {
+        if (now - generationStart < windowMillis) {
+            return;
+        }
+        AtomicLongArray recycled = previous;
+        if (now - generationStart >= windowMillis * 2) {
+            // 超过两个窗口没有访问，两代都已失效
+            clear(current);
+        }
+        clear(recycled);
+        previous = current;
+        current = recycled;
+        generationStart = now;
+    }
+
+    private static void clear(AtomicLongArray bits) {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.lazySet(i, 0L);
+        }
+    }
+}
@@ -11,4 +11,28 @@ public interface IColorizer {
      * @return Color 对象
      */
     Color nextColor();
+
+    /**
+     * 以 ARGB 整数的形式获取下一个颜色，直接写像素的绘制路径使用这个方法，不需要创建 Color 对象。
+     * 默认实现委托给 nextColor()，内置的选择器都直接生成整数。
+     * @return ARGB 颜色值
+     */
+    default int nextRgb() {
+        return nextColor().getRGB();
+    }
+
+    /**
+     * 使用给定的随机数来源获取下一个颜色，渲染器和内置干扰器调用这个方法。
+     * 默认实现忽略来源、转调 nextColor()。
+     */
+    default Color nextColor(IRandomSource random) {
+        return nextColor();
+    }
+
+    /**
+     * 使用给定的随机数来源获取下一个 ARGB 颜色值，默认实现忽略来源、转调 nextRgb()。
+     */
+    default int nextRgb(IRandomSource random) {
+        return nextRgb();
+    }
 }
@@ -0,0 +1,14 @@
+package com.mazepeng.kaptcha.api;
+
+/**
+ * 图像滤镜接口
+ * 在文字绘制完成之后、缩放到输出尺寸之前，直接对超采样画布的像素进行处理（如扭曲变形）
+ */
+public interface IFilter {
+
+    /**
+     * 对画布应用滤镜
+     * @param context 渲染上下文，通过 {@link RenderContext#getPixels()} 读写像素
+     */
+    void apply(RenderContext context);
+}
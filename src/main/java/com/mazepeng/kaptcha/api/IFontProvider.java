@@ -12,4 +12,23 @@ public interface IFontProvider {
      * @return Font 对象
      */
     Font getFont();
+
+    /**
+     * 获取已经派生到超采样字号、带有字体度量的字体，渲染时使用这个方法。
+     * 默认实现从 getFont() 取得字体并使用进程内共享的缓存；内置的提供器会在构造时预先准备好。
+     * @param scale 超采样倍数
+     * @return 派生好的字体
+     */
+    default ScaledFont getScaledFont(int scale) {
+        return ScaledFont.of(getFont(), scale);
+    }
+
+    /**
+     * 使用给定的随机数来源选择字体，渲染器调用这个方法。默认实现忽略来源、转调 getScaledFont(int)。
+     * @param scale  超采样倍数
+     * @param random 随机数来源
+     */
+    default ScaledFont getScaledFont(int scale, IRandomSource random) {
+        return getScaledFont(scale);
+    }
 }
@@ -8,4 +8,13 @@ public interface IGenerator {
 
     CaptchaContent generate();
 
+    /**
+     * 使用给定的随机数来源生成内容，渲染器调用这个方法。
+     * 默认实现忽略来源、转调 generate()；内置生成器都从传入的来源取随机数，固定种子时结果可以复现。
+     * @param random 随机数来源
+     */
+    default CaptchaContent generate(IRandomSource random) {
+        return generate();
+    }
+
 }
@@ -15,4 +15,13 @@ public interface IInterferer {
      * @param height 图片高度
      */
     void draw(Graphics2D g, int width, int height);
+
+    /**
+     * 在给定的渲染上下文中绘制干扰。
+     * 默认实现转调 {@link #draw(Graphics2D, int, int)}；需要感知超采样倍数（如按比例调整线宽）的干扰器可以覆盖此方法。
+     * @param context 渲染上下文
+     */
+    default void draw(RenderContext context) {
+        draw(context.getGraphics(), context.getWidth(), context.getHeight());
+    }
 }
@@ -0,0 +1,46 @@
+package com.mazepeng.kaptcha.api;
+
+/**
+ * 渲染指标监听器接口
+ * 在 CaptchaProducer.Builder 中注册后，每个阶段结束时都会收到耗时（纳秒）。
+ * 回调在渲染线程上同步执行，实现需要足够快且不能抛出异常。未注册时不会调用 System.nanoTime，没有额外开销。
+ */
+public interface IMetricsListener {
+
+    /**
+     * 某个阶段完成
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    void onStage(RenderStage stage, long nanos);
+
+    /**
+     * 一张验证码图片渲染完成（不含 PNG 编码）
+     * @param nanos 从生成文字到缩放完成的总耗时（纳秒）
+     */
+    default void onRendered(long nanos) {
+    }
+
+    /**
+     * PNG 编码完成，在 onStage(ENCODE, ...) 之后调用
+     * @param bytes 编码后的字节数
+     */
+    default void onEncoded(int bytes) {
+    }
+
+    /**
+     * 某个阶段失败，异常随后会被抛出给调用方
+     * @param stage 失败的阶段
+     * @param error 异常
+     */
+    default void onFailure(RenderStage stage, Throwable error) {
+    }
+
+    /**
+     * 启用自适应降级时渲染档位发生变化，可以用于告警
+     * @param previous 原来的档位
+     * @param current  新的档位
+     */
+    default void onLoadLevelChanged(LoadLevel previous, LoadLevel current) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.mazepeng.kaptcha.api;
+
+/**
+ * 随机数来源接口
+ * <p>
+ * 渲染一张验证码时，生成器、干扰器、颜色选择器、字体提供器和滤镜都从同一个来源取随机数，
+ * 因此使用固定种子的来源时，同样的配置总是得到逐字节相同的验证码。
+ * 一个来源只在一次渲染中由一个线程使用，实现不需要是线程安全的（线程本地的默认实现除外）。
+ */
+public interface IRandomSource {
+
+    /**
+     * @param bound 上界（不含），必须大于 0
+     * @return [0, bound) 之间均匀分布的整数
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return 均匀分布的 64 位整数
+     */
+    long nextLong();
+
+    /**
+     * @return [0, 1) 之间均匀分布的浮点数
+     */
+    double nextDouble();
+}
@@ -0,0 +1,22 @@
+package com.mazepeng.kaptcha.api;
+
+/**
+ * 自适应降级的渲染档位，由 CaptchaProducer 根据渲染耗时和排队数量自动切换
+ */
+public enum LoadLevel {
+
+    /**
+     * 按配置渲染
+     */
+    NORMAL,
+
+    /**
+     * 超采样倍数降低一档（QUALITY → BALANCED → FAST）
+     */
+    REDUCED,
+
+    /**
+     * 不超采样，并使用背景层缓存，干扰器只绘制到背景层中
+     */
+    MINIMAL
+}
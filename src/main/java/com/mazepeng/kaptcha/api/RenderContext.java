@@ -0,0 +1,120 @@
+package com.mazepeng.kaptcha.api;
+
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
+
+import java.awt.Graphics2D;
+import java.util.Objects;
+
+/**
+ * 渲染上下文
+ * 描述当前正在绘制的超采样画布，传递给干扰器等渲染组件
+ */
+public class RenderContext {
+
+    /**
+     * 旧版 draw(Graphics2D, int, int) 接口默认的超采样倍数（QUALITY 档位）
+     */
+    public static final int DEFAULT_SCALE = 3;
+
+    private final Graphics2D graphics;
+    private final int width;
+    private final int height;
+    private final int scale;
+    private final int[] pixels;
+    private final int offset;
+    private final int scanline;
+    private final IRandomSource random;
+    private final Rasterizer rasterizer;
+
+    /**
+     * @param graphics 画布的画笔
+     * @param width    画布宽度（已乘以超采样倍数）
+     * @param height   画布高度（已乘以超采样倍数）
+     * @param scale    超采样倍数
+     */
+    public RenderContext(Graphics2D graphics, int width, int height, int scale) {
+        this(graphics, width, height, scale, null, 0, width);
+    }
+
+    /**
+     * @param graphics 画布的画笔
+     * @param width    画布宽度（已乘以超采样倍数）
+     * @param height   画布高度（已乘以超采样倍数）
+     * @param scale    超采样倍数
+     * @param pixels   画布的 ARGB（非预乘）像素数组，不支持直接访问时为 null
+     * @param offset   画布左上角像素在数组中的下标
+     * @param scanline 每行的像素跨度
+     */
+    public RenderContext(Graphics2D graphics, int width, int height, int scale,
+                         int[] pixels, int offset, int scanline) {
+        this(graphics, width, height, scale, pixels, offset, scanline, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * @param random 本次渲染使用的随机数来源
+     */
+    public RenderContext(Graphics2D graphics, int width, int height, int scale,
+                         int[] pixels, int offset, int scanline, IRandomSource random) {
+        this(graphics, width, height, scale, pixels, offset, scanline, random, null);
+    }
+
+    /**
+     * @param random     本次渲染使用的随机数来源
+     * @param rasterizer 绘制到同一块画布的软件光栅化器，使用 Java2D 后端时为 null
+     */
+    public RenderContext(Graphics2D graphics, int width, int height, int scale,
+                         int[] pixels, int offset, int scanline, IRandomSource random, Rasterizer rasterizer) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Scale must be greater than 0.");
+        }
+        this.graphics = graphics;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.pixels = pixels;
+        this.offset = offset;
+        this.scanline = scanline;
+        this.random = Objects.requireNonNull(random);
+        this.rasterizer = rasterizer;
+    }
+
+    public Graphics2D getGraphics() { return graphics; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getScale() { return scale; }
+
+    /**
+     * 画布的像素数组，可以绕过 Graphics2D 直接读写 ARGB 像素。
+     * 画布是软件渲染的 BufferedImage，直接写入的像素对之后的 Graphics2D 绘制立即可见。
+     * @return 像素数组，不支持直接访问时为 null
+     */
+    public int[] getPixels() { return pixels; }
+
+    /**
+     * @return 坐标 (x, y) 的像素下标为 offset + y * scanline + x
+     */
+    public int getOffset() { return offset; }
+    public int getScanline() { return scanline; }
+
+    /**
+     * 本次渲染的随机数来源，干扰器和滤镜应从这里取随机数，而不是直接使用 ThreadLocalRandom，
+     * 这样固定种子时整张验证码可以复现
+     */
+    public IRandomSource getRandom() { return random; }
+
+    /**
+     * 软件渲染后端的光栅化器。不为 null 时，内置干扰器直接用它把线条画进像素数组，不再经过 Graphics2D
+     * @return 光栅化器，使用 Java2D 后端时为 null
+     */
+    public Rasterizer getRasterizer() { return rasterizer; }
+
+    /**
+     * 把以 3 倍画布为基准的长度（如线宽）换算到当前画布，保证不同档位下输出的视觉效果一致
+     * @param length 在 3 倍画布上的长度
+     * @return 当前画布上的长度
+     */
+    public float scaled(float length) {
+        return length * scale / DEFAULT_SCALE;
+    }
+}
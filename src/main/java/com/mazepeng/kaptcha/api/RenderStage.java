@@ -0,0 +1,42 @@
+package com.mazepeng.kaptcha.api;
+
+/**
+ * 验证码生成过程中的各个阶段，用于耗时统计
+ */
+public enum RenderStage {
+
+    /**
+     * 生成文字内容（IGenerator.generate）
+     */
+    GENERATE,
+
+    /**
+     * 填充背景并绘制干扰（IInterferer）
+     */
+    INTERFERE,
+
+    /**
+     * 获取字体并派生出超采样字号
+     */
+    FONT,
+
+    /**
+     * 绘制文字
+     */
+    TEXT,
+
+    /**
+     * 应用滤镜（IFilter），未配置滤镜时没有这个阶段
+     */
+    FILTER,
+
+    /**
+     * 从超采样画布缩放到输出尺寸
+     */
+    DOWNSCALE,
+
+    /**
+     * 编码为 PNG，每个验证码只发生一次
+     */
+    ENCODE
+}
@@ -0,0 +1,114 @@
+package com.mazepeng.kaptcha.api;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 已经派生到超采样字号的字体，以及预先取好的 FontMetrics 和 Latin-1 字符的字宽
+ * <p>
+ * 字体提供器在构造时（或第一次使用时）创建好，之后每次渲染直接复用，不再派生字体、查询字体度量。
+ * 度量使用与渲染画布一致的设置（文字抗锯齿、整数度量）获取。
+ */
+public final class ScaledFont {
+
+    // 自定义字体提供器的共享缓存上限，超出后清空重建
+    private static final int MAX_CACHED_FONTS = 256;
+    private static final int MAX_CACHED_SCALE = 4;
+    private static final ConcurrentMap<Font, ScaledFont[]> CACHE = new ConcurrentHashMap<>();
+
+    private final Font font;
+    private final int scale;
+    private final FontMetrics metrics;
+    private final int ascent;
+    private final int height;
+    private final int[] widths;
+
+    private ScaledFont(Font font, int scale, FontMetrics metrics) {
+        this.font = font;
+        this.scale = scale;
+        this.metrics = metrics;
+        this.ascent = metrics.getAscent();
+        this.height = metrics.getHeight();
+        this.widths = metrics.getWidths();
+    }
+
+    /**
+     * 把基础字体按倍数派生，并取得字体度量
+     * @param base  输出尺寸下的字体
+     * @param scale 超采样倍数
+     */
+    public static ScaledFont create(Font base, int scale) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Scale must be greater than 0.");
+        }
+        Font font = scale == 1 ? base : base.deriveFont(base.getSize2D() * scale);
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = probe.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            return new ScaledFont(font, scale, g.getFontMetrics(font));
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * 从进程内共享的缓存中获取，供只实现了 getFont() 的字体提供器使用
+     */
+    public static ScaledFont of(Font base, int scale) {
+        if (scale > MAX_CACHED_SCALE) {
+            return create(base, scale);
+        }
+        ScaledFont[] byScale = CACHE.get(base);
+        if (byScale == null) {
+            if (CACHE.size() >= MAX_CACHED_FONTS) {
+                Iterator<Font> it = CACHE.keySet().iterator();
+                while (CACHE.size() >= MAX_CACHED_FONTS && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            byScale = CACHE.computeIfAbsent(base, f -> new ScaledFont[MAX_CACHED_SCALE + 1]);
+        }
+        ScaledFont scaled = byScale[scale];
+        if (scaled == null) {
+            // 并发时可能重复创建，结果相同
+            scaled = create(base, scale);
+            byScale[scale] = scaled;
+        }
+        return scaled;
+    }
+
+    /**
+     * @return 超采样字号的字体
+     */
+    public Font getFont() {
+        return font;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public FontMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getAscent() {
+        return ascent;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 单个字符的字宽，Latin-1 范围内的字符直接查表
+     */
+    public int charWidth(char c) {
+        return c < widths.length ? widths[c] : metrics.charWidth(c);
+    }
+}
@@ -0,0 +1,171 @@
+package com.mazepeng.kaptcha.color;
+
+import com.mazepeng.kaptcha.api.IColorizer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
+
+import java.awt.Color;
+import java.util.Objects;
+
+/**
+ * 调色板颜色选择器
+ * <p>
+ * 颜色在构造时一次性生成好（同时保存 ARGB 整数和 Color 对象），取色时只是用随机数查一次表，
+ * 不创建任何对象，线程之间没有竞争。
+ * 可以用 contrasting 生成与背景色对比度足够的调色板，保证文字的可读性。
+ */
+public class PaletteColorizer implements IColorizer {
+
+    // 生成对比度调色板时，每个颜色最多尝试的次数
+    private static final int MAX_ATTEMPTS_PER_COLOR = 1000;
+
+    private final int[] rgb;
+    private final Color[] colors;
+
+    /**
+     * @param rgb 调色板中的颜色（RGB 或 ARGB），不带 alpha 的颜色按不透明处理
+     */
+    public PaletteColorizer(int... rgb) {
+        if (rgb.length == 0) {
+            throw new IllegalArgumentException("Palette must contain at least one color.");
+        }
+        this.rgb = new int[rgb.length];
+        this.colors = new Color[rgb.length];
+        for (int i = 0; i < rgb.length; i++) {
+            int argb = (rgb[i] >>> 24) == 0 ? 0xFF000000 | rgb[i] : rgb[i];
+            this.rgb[i] = argb;
+            this.colors[i] = new Color(argb, true);
+        }
+    }
+
+    /**
+     * 生成完全随机的不透明颜色组成的调色板，适合干扰线等不要求对比度的场景
+     * @param size 颜色数量
+     */
+    public static PaletteColorizer random(int size) {
+        return random(size, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * 使用给定的随机数来源生成随机调色板，固定种子时调色板可以复现
+     */
+    public static PaletteColorizer random(int size, IRandomSource random) {
+        return random(size, 256, random);
+    }
+
+    /**
+     * 生成各分量都小于 150 的随机深色调色板，与 RandomColorizer 的颜色分布一致
+     * @param size 颜色数量
+     */
+    public static PaletteColorizer dark(int size) {
+        return dark(size, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * 使用给定的随机数来源生成随机深色调色板
+     */
+    public static PaletteColorizer dark(int size, IRandomSource random) {
+        return random(size, 150, random);
+    }
+
+    /**
+     * 生成与背景色的对比度不低于 minContrast 的随机调色板
+     * @param background  背景色，通常与 CaptchaProducer 的背景色一致
+     * @param size        颜色数量
+     * @param minContrast 最低对比度（WCAG 定义，1 ~ 21），正文文字的推荐值为 4.5
+     */
+    public static PaletteColorizer contrasting(Color background, int size, double minContrast) {
+        return contrasting(background, size, minContrast, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * 使用给定的随机数来源生成对比度调色板
+     */
+    public static PaletteColorizer contrasting(Color background, int size, double minContrast, IRandomSource random) {
+        Objects.requireNonNull(background);
+        checkSize(size);
+        if (minContrast < 1 || minContrast > 21) {
+            throw new IllegalArgumentException("Contrast must be between 1 and 21.");
+        }
+        double backgroundLuminance = luminance(background.getRGB());
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            int attempts = 0;
+            int candidate;
+            do {
+                if (++attempts > MAX_ATTEMPTS_PER_COLOR) {
+                    throw new IllegalArgumentException("No colors satisfy the contrast requirement against the background.");
+                }
+                candidate = 0xFF000000 | random.nextInt(0x1000000);
+            } while (contrast(luminance(candidate), backgroundLuminance) < minContrast);
+            palette[i] = candidate;
+        }
+        return new PaletteColorizer(palette);
+    }
+
+    @Override
+    public Color nextColor() {
+        return nextColor(ThreadLocalRandomSource.getInstance());
+    }
+
+    @Override
+    public int nextRgb() {
+        return nextRgb(ThreadLocalRandomSource.getInstance());
+    }
+
+    @Override
+    public Color nextColor(IRandomSource random) {
+        return colors[random.nextInt(colors.length)];
+    }
+
+    @Override
+    public int nextRgb(IRandomSource random) {
+        return rgb[random.nextInt(rgb.length)];
+    }
+
+    /**
+     * @return 调色板中的颜色数量
+     */
+    public int size() {
+        return rgb.length;
+    }
+
+    /**
+     * 计算两个颜色之间的对比度（WCAG 2.x）
+     * @return 1 ~ 21 之间的对比度
+     */
+    public static double contrast(int rgb1, int rgb2) {
+        return contrast(luminance(rgb1), luminance(rgb2));
+    }
+
+    private static PaletteColorizer random(int size, int bound, IRandomSource random) {
+        checkSize(size);
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            palette[i] = 0xFF000000 | random.nextInt(bound) << 16 | random.nextInt(bound) << 8 | random.nextInt(bound);
+        }
+        return new PaletteColorizer(palette);
+    }
+
+    private static void checkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Palette must contain at least one color.");
+        }
+    }
+
+    private static double contrast(double l1, double l2) {
+        return (Math.max(l1, l2) + 0.05) / (Math.min(l1, l2) + 0.05);
+    }
+
+    /**
+     * sRGB 颜色的相对亮度
+     */
+    private static double luminance(int rgb) {
+        return 0.2126 * linear((rgb >> 16) & 0xFF) + 0.7152 * linear((rgb >> 8) & 0xFF) + 0.0722 * linear(rgb & 0xFF);
+    }
+
+    private static double linear(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.03928 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+}
@@ -1,20 +1,35 @@
 package com.mazepeng.kaptcha.color;
 
 import com.mazepeng.kaptcha.api.IColorizer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
 
 import java.awt.Color;
-import java.util.Random;
 
 /**
  * 随机颜色选择器 (用于文字)
+ * 默认使用线程本地的随机数，多个渲染线程之间没有竞争；渲染时使用本次渲染的随机数来源。
  */
 public class RandomColorizer implements IColorizer {
 
-    private final Random random = new Random();
-
     @Override
     public Color nextColor() {
+        return new Color(nextRgb());
+    }
+
+    @Override
+    public int nextRgb() {
+        return nextRgb(ThreadLocalRandomSource.getInstance());
+    }
+
+    @Override
+    public Color nextColor(IRandomSource random) {
+        return new Color(nextRgb(random));
+    }
+
+    @Override
+    public int nextRgb(IRandomSource random) {
         // 返回较深的颜色以保证可读性
-        return new Color(random.nextInt(150), random.nextInt(150), random.nextInt(150));
+        return 0xFF000000 | random.nextInt(150) << 16 | random.nextInt(150) << 8 | random.nextInt(150);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package com.mazepeng.kaptcha.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式输出 PNG 的 Data URI（data:image/png;base64,...）
+ * <p>
+ * 按固定大小的分块进行 Base64 编码并直接写入目标，不会生成完整的 Base64 数组或字符串。
+ * 每次调用只使用一个很小的临时缓冲区。
+ */
+public final class DataUriWriter {
+
+    /**
+     * PNG Data URI 的前缀
+     */
+    public static final String PNG_PREFIX = "data:image/png;base64,";
+
+    private static final byte[] PREFIX_BYTES = PNG_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // 每块处理 3 * 256 个字节，输出 4 * 256 个字符
+    private static final int CHUNK_GROUPS = 256;
+
+    private DataUriWriter() {
+    }
+
+    /**
+     * @return Data URI 的总长度（字符数），可用于设置 Content-Length
+     */
+    public static int length(int dataLength) {
+        return PNG_PREFIX.length() + (dataLength + 2) / 3 * 4;
+    }
+
+    /**
+     * 把 PNG 字节以 Data URI 的形式写入输出流（ASCII 编码）
+     */
+    public static void write(byte[] png, OutputStream os) throws IOException {
+        os.write(PREFIX_BYTES);
+        byte[] chunk = new byte[CHUNK_GROUPS * 4];
+        int pos = 0;
+        while (pos < png.length) {
+            int n = Math.min(CHUNK_GROUPS * 3, png.length - pos);
+            int written = 0;
+            for (int i = 0; i < n; i += 3) {
+                written = encodeGroup(png, pos + i, Math.min(3, n - i), chunk, written);
+            }
+            os.write(chunk, 0, written);
+            pos += n;
+        }
+    }
+
+    /**
+     * 把 PNG 字节以 Data URI 的形式追加到 Appendable（如 StringBuilder、Writer）
+     */
+    public static void append(byte[] png, Appendable out) throws IOException {
+        out.append(PNG_PREFIX);
+        char[] chunk = new char[CHUNK_GROUPS * 4];
+        CharBuffer view = CharBuffer.wrap(chunk);
+        int pos = 0;
+        while (pos < png.length) {
+            int n = Math.min(CHUNK_GROUPS * 3, png.length - pos);
+            int written = 0;
+            for (int i = 0; i < n; i += 3) {
+                written = encodeGroup(png, pos + i, Math.min(3, n - i), chunk, written);
+            }
+            out.append(view, 0, written);
+            pos += n;
+        }
+    }
+
+    private static int encodeGroup(byte[] src, int off, int len, byte[] dst, int dp) {
+        int bits = (src[off] & 0xFF) << 16
+                | (len > 1 ? (src[off + 1] & 0xFF) << 8 : 0)
+                | (len > 2 ? src[off + 2] & 0xFF : 0);
+        dst[dp++] = (byte) ALPHABET[(bits >>> 18) & 0x3F];
+        dst[dp++] = (byte) ALPHABET[(bits >>> 12) & 0x3F];
+        dst[dp++] = (byte) (len > 1 ? ALPHABET[(bits >>> 6) & 0x3F] : '=');
+        dst[dp++] = (byte) (len > 2 ? ALPHABET[bits & 0x3F] : '=');
+        return dp;
+    }
+
+    private static int encodeGroup(byte[] src, int off, int len, char[] dst, int dp) {
+        int bits = (src[off] & 0xFF) << 16
+                | (len > 1 ? (src[off + 1] & 0xFF) << 8 : 0)
+                | (len > 2 ? src[off + 2] & 0xFF : 0);
+        dst[dp++] = ALPHABET[(bits >>> 18) & 0x3F];
+        dst[dp++] = ALPHABET[(bits >>> 12) & 0x3F];
+        dst[dp++] = len > 1 ? ALPHABET[(bits >>> 6) & 0x3F] : '=';
+        dst[dp++] = len > 2 ? ALPHABET[bits & 0x3F] : '=';
+        return dp;
+    }
+}
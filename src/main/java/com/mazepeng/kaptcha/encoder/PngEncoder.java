@@ -0,0 +1,489 @@
+package com.mazepeng.kaptcha.encoder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 针对验证码图片优化的 PNG 编码器
+ * <p>
+ * 相比 ImageIO.write：
+ * - 不查找插件、不使用磁盘缓存，直接读取 int[] 像素数组。
+ * - 颜色数不超过 256 时输出调色板（索引色）图片，并按颜色数选择 1/2/4/8 位深度。
+ * - 压缩级别和行过滤方式可配置。
+ * - 每个线程复用同一个 Deflater 和所有临时缓冲区，稳定状态下每次编码只分配最终结果。
+ * 实例是线程安全的，可以被多个线程共享。
+ */
+public final class PngEncoder {
+
+    /**
+     * PNG 行过滤方式
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH,
+        /**
+         * 对每一行尝试全部过滤方式，选择绝对值之和最小的一种（与 libpng 的启发式相同）
+         */
+        ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int MAX_PALETTE = 256;
+
+    private final int compressionLevel;
+    private final Filter filter;
+    private final boolean palette;
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * 默认配置：压缩级别 6，不过滤，允许调色板输出。
+     * 验证码图片充满噪点和抗锯齿边缘，实测行过滤反而会让体积变大，因此默认不过滤。
+     */
+    public PngEncoder() {
+        this(6, Filter.NONE, true);
+    }
+
+    /**
+     * 构造函数
+     * @param compressionLevel Deflate 压缩级别 0-9，越大越小越慢
+     * @param filter           真彩色图片使用的行过滤方式（调色板图片始终不过滤，这是 PNG 规范的建议）
+     * @param palette          颜色数不超过 256 时是否输出调色板图片
+     */
+    public PngEncoder(int compressionLevel, Filter filter, boolean palette) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9.");
+        }
+        this.compressionLevel = compressionLevel;
+        this.filter = Objects.requireNonNull(filter);
+        this.palette = palette;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(compressionLevel, filter));
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * 把图片编码为 PNG 并写入输出流（整张图片只调用一次 write）
+     */
+    public void encode(BufferedImage image, OutputStream os) throws IOException {
+        Scratch s = scratch.get();
+        int length = encodeToScratch(image, s);
+        os.write(s.out, 0, length);
+    }
+
+    /**
+     * 把图片编码为 PNG
+     * @return PNG 文件的全部字节
+     */
+    public byte[] encode(BufferedImage image) {
+        Scratch s = scratch.get();
+        int length = encodeToScratch(image, s);
+        return Arrays.copyOf(s.out, length);
+    }
+
+    private int encodeToScratch(BufferedImage image, Scratch s) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        int[] pixels = readPixels(image, s);
+
+        int paletteSize = palette ? s.buildPalette(pixels, width * height) : -1;
+        int colorType;
+        int bitDepth = 8;
+        int bpp;
+        int rowBytes;
+        if (paletteSize > 0) {
+            colorType = COLOR_TYPE_PALETTE;
+            bitDepth = paletteSize <= 2 ? 1 : paletteSize <= 4 ? 2 : paletteSize <= 16 ? 4 : 8;
+            bpp = 1;
+            rowBytes = (width * bitDepth + 7) >> 3;
+        } else {
+            colorType = hasAlpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB;
+            bpp = hasAlpha ? 4 : 3;
+            rowBytes = width * bpp;
+        }
+
+        int rawLength = (rowBytes + 1) * height;
+        byte[] raw = s.raw(rawLength);
+        s.rows(rowBytes);
+        Arrays.fill(s.prev, 0, rowBytes, (byte) 0);
+        Filter rowFilter = colorType == COLOR_TYPE_PALETTE ? Filter.NONE : filter;
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            int base = y * width;
+            if (colorType == COLOR_TYPE_PALETTE) {
+                s.packIndices(pixels, base, width, bitDepth, s.cur);
+            } else {
+                packTrueColor(pixels, base, width, hasAlpha, s.cur);
+            }
+            raw[pos] = (byte) applyFilter(rowFilter, s, rowBytes, bpp, raw, pos + 1);
+            pos += rowBytes + 1;
+            byte[] t = s.prev;
+            s.prev = s.cur;
+            s.cur = t;
+        }
+
+        // 组装 PNG 文件
+        s.reset();
+        s.writeBytes(SIGNATURE, 0, SIGNATURE.length);
+
+        int ihdr = s.beginChunk(IHDR);
+        s.writeInt(width);
+        s.writeInt(height);
+        s.writeByte(bitDepth);
+        s.writeByte(colorType);
+        s.writeByte(0); // 压缩方式
+        s.writeByte(0); // 过滤方式
+        s.writeByte(0); // 非隔行扫描
+        s.endChunk(ihdr);
+
+        if (colorType == COLOR_TYPE_PALETTE) {
+            int plte = s.beginChunk(PLTE);
+            boolean translucent = false;
+            for (int i = 0; i < paletteSize; i++) {
+                int argb = s.paletteColors[i];
+                s.writeByte(argb >> 16);
+                s.writeByte(argb >> 8);
+                s.writeByte(argb);
+                translucent |= (argb >>> 24) != 0xFF;
+            }
+            s.endChunk(plte);
+            if (translucent) {
+                int trns = s.beginChunk(TRNS);
+                for (int i = 0; i < paletteSize; i++) {
+                    s.writeByte(s.paletteColors[i] >>> 24);
+                }
+                s.endChunk(trns);
+            }
+        }
+
+        s.deflate(raw, rawLength);
+
+        int iend = s.beginChunk(IEND);
+        s.endChunk(iend);
+        return s.length;
+    }
+
+    /**
+     * 读取 ARGB 像素，不带 alpha 的图片统一补成不透明。INT_ARGB 图片直接使用底层数组
+     */
+    private static int[] readPixels(BufferedImage image, Scratch s) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && image.getRaster().getParent() == null) {
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) image.getSampleModel();
+            DataBufferInt db = (DataBufferInt) image.getRaster().getDataBuffer();
+            if (sm.getScanlineStride() == width && db.getOffset() == 0) {
+                int[] data = db.getData();
+                if (type == BufferedImage.TYPE_INT_ARGB) {
+                    return data;
+                }
+                // INT_RGB 的高 8 位未定义，统一补成不透明
+                int[] px = s.pixels(width * height);
+                for (int i = 0, n = width * height; i < n; i++) {
+                    px[i] = data[i] | 0xFF000000;
+                }
+                return px;
+            }
+        }
+        int[] px = s.pixels(width * height);
+        image.getRGB(0, 0, width, height, px, 0, width);
+        return px;
+    }
+
+    private static void packTrueColor(int[] pixels, int base, int width, boolean hasAlpha, byte[] row) {
+        int j = 0;
+        for (int x = 0; x < width; x++) {
+            int argb = pixels[base + x];
+            row[j++] = (byte) (argb >> 16);
+            row[j++] = (byte) (argb >> 8);
+            row[j++] = (byte) argb;
+            if (hasAlpha) {
+                row[j++] = (byte) (argb >>> 24);
+            }
+        }
+    }
+
+    /**
+     * 对当前行应用过滤，把结果写入 out[outPos..]，返回使用的过滤类型
+     */
+    private static int applyFilter(Filter filter, Scratch s, int rowBytes, int bpp, byte[] out, int outPos) {
+        byte[] cur = s.cur;
+        byte[] prev = s.prev;
+        if (filter != Filter.ADAPTIVE) {
+            filterRow(filter.ordinal(), cur, prev, rowBytes, bpp, out, outPos);
+            return filter.ordinal();
+        }
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type <= 4; type++) {
+            byte[] candidate = s.candidates[type];
+            filterRow(type, cur, prev, rowBytes, bpp, candidate, 0);
+            long sum = 0;
+            for (int i = 0; i < rowBytes; i++) {
+                sum += Math.abs((int) candidate[i]);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = type;
+            }
+        }
+        System.arraycopy(s.candidates[best], 0, out, outPos, rowBytes);
+        return best;
+    }
+
+    private static void filterRow(int type, byte[] cur, byte[] prev, int n, int bpp, byte[] out, int off) {
+        switch (type) {
+            case 0:
+                System.arraycopy(cur, 0, out, off, n);
+                break;
+            case 1:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[off + i] = (byte) (cur[i] - left);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) {
+                    out[off + i] = (byte) (cur[i] - prev[i]);
+                }
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[off + i] = (byte) (cur[i] - ((left + (prev[i] & 0xFF)) >> 1));
+                }
+                break;
+            case 4:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    out[off + i] = (byte) (cur[i] - paeth(a, b, c));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unreachable code");
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * 每个线程独享的编码缓冲区
+     */
+    private static final class Scratch {
+
+        // 调色板哈希表：开放寻址，容量为最大颜色数的 2 倍
+        private static final int TABLE_SIZE = MAX_PALETTE * 2;
+
+        final Deflater deflater;
+        final CRC32 crc = new CRC32();
+        final int[] tableKeys = new int[TABLE_SIZE];
+        final short[] tableValues = new short[TABLE_SIZE];
+        final boolean[] tableUsed = new boolean[TABLE_SIZE];
+        final int[] paletteColors = new int[MAX_PALETTE];
+
+        int[] pixels = new int[0];
+        byte[] raw = new byte[0];
+        byte[] cur = new byte[0];
+        byte[] prev = new byte[0];
+        byte[][] candidates = new byte[5][0];
+        byte[] deflateBuffer = new byte[8192];
+        byte[] out = new byte[8192];
+        int length;
+
+        Scratch(int level, Filter filter) {
+            this.deflater = new Deflater(level);
+            // 经过行过滤的数据更适合 FILTERED 策略（与 libpng 一致）
+            deflater.setStrategy(filter == Filter.NONE ? Deflater.DEFAULT_STRATEGY : Deflater.FILTERED);
+        }
+
+        int[] pixels(int n) {
+            if (pixels.length < n) {
+                pixels = new int[n];
+            }
+            return pixels;
+        }
+
+        byte[] raw(int n) {
+            if (raw.length < n) {
+                raw = new byte[n];
+            }
+            return raw;
+        }
+
+        void rows(int rowBytes) {
+            if (cur.length < rowBytes) {
+                cur = new byte[rowBytes];
+                prev = new byte[rowBytes];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = new byte[rowBytes];
+                }
+            }
+        }
+
+        /**
+         * 收集图片中的颜色，超过 256 种时立即放弃
+         * @return 调色板颜色数，无法使用调色板时返回 -1
+         */
+        int buildPalette(int[] px, int n) {
+            Arrays.fill(tableUsed, false);
+            int count = 0;
+            int lastColor = 0;
+            boolean hasLast = false;
+            for (int i = 0; i < n; i++) {
+                int argb = px[i];
+                if (hasLast && argb == lastColor) {
+                    continue;
+                }
+                lastColor = argb;
+                hasLast = true;
+                int slot = indexOf(argb);
+                if (!tableUsed[slot]) {
+                    if (count == MAX_PALETTE) {
+                        return -1;
+                    }
+                    tableUsed[slot] = true;
+                    tableKeys[slot] = argb;
+                    tableValues[slot] = (short) count;
+                    paletteColors[count++] = argb;
+                }
+            }
+            return count;
+        }
+
+        private int indexOf(int argb) {
+            int slot = (argb * 0x9E3779B1) >>> 23; // 512 个槽位
+            while (tableUsed[slot] && tableKeys[slot] != argb) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            return slot;
+        }
+
+        void packIndices(int[] px, int base, int width, int bitDepth, byte[] row) {
+            if (bitDepth == 8) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = (byte) tableValues[indexOf(px[base + x])];
+                }
+                return;
+            }
+            int perByte = 8 / bitDepth;
+            int j = 0;
+            int acc = 0;
+            int filled = 0;
+            for (int x = 0; x < width; x++) {
+                acc = (acc << bitDepth) | tableValues[indexOf(px[base + x])];
+                if (++filled == perByte) {
+                    row[j++] = (byte) acc;
+                    acc = 0;
+                    filled = 0;
+                }
+            }
+            if (filled > 0) {
+                row[j] = (byte) (acc << (bitDepth * (perByte - filled)));
+            }
+        }
+
+        void deflate(byte[] data, int n) {
+            deflater.reset();
+            deflater.setInput(data, 0, n);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int len = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+                if (len > 0) {
+                    int idat = beginChunk(IDAT);
+                    writeBytes(deflateBuffer, 0, len);
+                    endChunk(idat);
+                }
+            }
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, length + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            out[length++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            out[length++] = (byte) (v >>> 24);
+            out[length++] = (byte) (v >>> 16);
+            out[length++] = (byte) (v >>> 8);
+            out[length++] = (byte) v;
+        }
+
+        void writeBytes(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, out, length, len);
+            length += len;
+        }
+
+        /**
+         * 写入长度占位和块类型，返回块类型所在位置
+         */
+        int beginChunk(int type) {
+            writeInt(0);
+            int start = length;
+            writeInt(type);
+            return start;
+        }
+
+        /**
+         * 回填长度并写入 CRC（覆盖块类型和数据）
+         */
+        void endChunk(int start) {
+            int dataLength = length - start - 4;
+            out[start - 4] = (byte) (dataLength >>> 24);
+            out[start - 3] = (byte) (dataLength >>> 16);
+            out[start - 2] = (byte) (dataLength >>> 8);
+            out[start - 1] = (byte) dataLength;
+            crc.reset();
+            crc.update(out, start, length - start);
+            writeInt((int) crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.mazepeng.kaptcha.filter;
+
+import com.mazepeng.kaptcha.api.IFilter;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 波纹扭曲滤镜
+ * <p>
+ * 对已经画好文字的画布做真正的像素位移：每一行整体水平错位，每一列整体垂直错位，位移量都是正弦波，
+ * 因此文字本身会被扭曲，而不只是在上面叠加波浪线。
+ * - 正弦位移表按 (画布宽, 画布高, 振幅档位) 预先计算并缓存，每次只随机选择相位，不再逐像素调用 Math.sin。
+ * - 采样使用 16.16 定点坐标和双线性插值，全部是整数运算。
+ * - 画布较大时按行拆分到 ForkJoinPool 中并行处理。
+ */
+public class RippleFilter implements IFilter {
+
+    // 像素数超过该值时按行并行处理
+    private static final int PARALLEL_THRESHOLD = 1 << 18;
+    // 每个并行任务至少处理的行数
+    private static final int MIN_ROWS_PER_TASK = 16;
+    // 振幅按 1/4 像素分档
+    private static final int AMPLITUDE_STEPS_PER_PIXEL = 4;
+    private static final int MAX_CACHED_TABLES = 32;
+
+    private final float amplitude;
+    private final float xPeriods;
+    private final float yPeriods;
+    private final ConcurrentMap<Long, Tables> tables = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[1][0]);
+
+    /**
+     * 默认构造函数：振幅 1.5 个输出像素，横向 2 个波长，纵向 1 个波长
+     */
+    public RippleFilter() {
+        this(1.5f, 2f, 1f);
+    }
+
+    /**
+     * 构造函数
+     * @param amplitude 最大位移，以输出图片的像素为单位（会按超采样倍数换算）
+     * @param xPeriods  垂直位移沿横向重复的波长个数
+     * @param yPeriods  水平位移沿纵向重复的波长个数
+     */
+    public RippleFilter(float amplitude, float xPeriods, float yPeriods) {
+        if (amplitude < 0) {
+            throw new IllegalArgumentException("Amplitude must not be negative.");
+        }
+        if (xPeriods <= 0 || yPeriods <= 0) {
+            throw new IllegalArgumentException("Periods must be greater than 0.");
+        }
+        this.amplitude = amplitude;
+        this.xPeriods = xPeriods;
+        this.yPeriods = yPeriods;
+    }
+
+    @Override
+    public void apply(RenderContext context) {
+        int[] pixels = context.getPixels();
+        if (pixels == null) {
+            return;
+        }
+        int width = context.getWidth();
+        int height = context.getHeight();
+        int bucket = Math.round(amplitude * context.getScale() * AMPLITUDE_STEPS_PER_PIXEL);
+        if (bucket == 0 || width < 2 || height < 2) {
+            return;
+        }
+
+        Tables t = tables(width, height, bucket);
+        IRandomSource random = context.getRandom();
+        int phaseX = random.nextInt(t.periodX);
+        int phaseY = random.nextInt(t.periodY);
+
+        int[] src = copy(pixels, context.getOffset(), context.getScanline(), width, height);
+        Warp warp = new Warp(src, pixels, context.getOffset(), context.getScanline(), width, height, t, phaseX, phaseY);
+        if (width * height >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new RowTask(warp, 0, height));
+        } else {
+            warp.rows(0, height);
+        }
+    }
+
+    private Tables tables(int width, int height, int bucket) {
+        long key = ((long) width << 40) | ((long) height << 20) | bucket;
+        Tables t = tables.get(key);
+        if (t == null) {
+            if (tables.size() >= MAX_CACHED_TABLES) {
+                tables.clear();
+            }
+            t = tables.computeIfAbsent(key, k -> new Tables(width, height, bucket / (float) AMPLITUDE_STEPS_PER_PIXEL,
+                    xPeriods, yPeriods));
+        }
+        return t;
+    }
+
+    /**
+     * 把画布拷贝到本线程的连续缓冲区中，作为采样源
+     */
+    private int[] copy(int[] pixels, int offset, int scanline, int width, int height) {
+        int[][] holder = scratch.get();
+        int n = width * height;
+        if (holder[0].length < n) {
+            holder[0] = new int[n];
+        }
+        int[] src = holder[0];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, offset + y * scanline, src, y * width, width);
+        }
+        return src;
+    }
+
+    /**
+     * 预先计算的正弦位移表（16.16 定点数）。表长多出一个波长，随机相位直接作为下标偏移使用
+     */
+    private static final class Tables {
+
+        final int periodX;
+        final int periodY;
+        final int[] dyByColumn;
+        final int[] dxByRow;
+
+        Tables(int width, int height, float amplitude, float xPeriods, float yPeriods) {
+            this.periodX = Math.max(1, Math.round(width / xPeriods));
+            this.periodY = Math.max(1, Math.round(height / yPeriods));
+            this.dyByColumn = sine(width + periodX, periodX, amplitude);
+            this.dxByRow = sine(height + periodY, periodY, amplitude);
+        }
+
+        private static int[] sine(int length, int period, float amplitude) {
+            int[] table = new int[length];
+            double step = 2 * Math.PI / period;
+            for (int i = 0; i < length; i++) {
+                table[i] = (int) Math.round(Math.sin(i * step) * amplitude * 65536.0);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * 一次扭曲操作的全部参数，按行区间执行
+     */
+    private static final class Warp {
+
+        final int[] src;
+        final int[] dst;
+        final int offset;
+        final int scanline;
+        final int width;
+        final int height;
+        final Tables tables;
+        final int phaseX;
+        final int phaseY;
+
+        Warp(int[] src, int[] dst, int offset, int scanline, int width, int height,
+             Tables tables, int phaseX, int phaseY) {
+            this.src = src;
+            this.dst = dst;
+            this.offset = offset;
+            this.scanline = scanline;
+            this.width = width;
+            this.height = height;
+            this.tables = tables;
+            this.phaseX = phaseX;
+            this.phaseY = phaseY;
+        }
+
+        void rows(int from, int to) {
+            int[] dyByColumn = tables.dyByColumn;
+            int maxX = width - 1;
+            int maxY = height - 1;
+            for (int y = from; y < to; y++) {
+                int sxBase = tables.dxByRow[y + phaseY];
+                int rowStart = offset + y * scanline;
+                for (int x = 0; x < width; x++) {
+                    int sx = (x << 16) + sxBase;
+                    int sy = (y << 16) + dyByColumn[x + phaseX];
+
+                    int ix = sx >> 16;
+                    int iy = sy >> 16;
+                    int fx = (sx >>> 8) & 0xFF;
+                    int fy = (sy >>> 8) & 0xFF;
+                    if (ix < 0) {
+                        ix = 0;
+                        fx = 0;
+                    } else if (ix >= maxX) {
+                        ix = maxX;
+                        fx = 0;
+                    }
+                    if (iy < 0) {
+                        iy = 0;
+                        fy = 0;
+                    } else if (iy >= maxY) {
+                        iy = maxY;
+                        fy = 0;
+                    }
+
+                    int i00 = iy * width + ix;
+                    int i01 = fx == 0 ? i00 : i00 + 1;
+                    int i10 = fy == 0 ? i00 : i00 + width;
+                    int i11 = fy == 0 ? i01 : i01 + width;
+                    dst[rowStart + x] = bilinear(src[i00], src[i01], src[i10], src[i11], fx, fy);
+                }
+            }
+        }
+
+        private static int bilinear(int p00, int p01, int p10, int p11, int fx, int fy) {
+            int top = fx == 0 ? p00 : lerp(p00, p01, fx);
+            if (fy == 0) {
+                return top;
+            }
+            int bottom = fx == 0 ? p10 : lerp(p10, p11, fx);
+            return lerp(top, bottom, fy);
+        }
+
+        /**
+         * 两个 ARGB 像素按 8 位权重线性插值，每次乘法同时处理两个通道
+         */
+        private static int lerp(int p0, int p1, int f) {
+            if (p0 == p1) {
+                return p0;
+            }
+            int inv = 256 - f;
+            int rb = (((p0 & 0xFF00FF) * inv + (p1 & 0xFF00FF) * f) >>> 8) & 0xFF00FF;
+            int ag = (((p0 >>> 8) & 0xFF00FF) * inv + ((p1 >>> 8) & 0xFF00FF) * f) & 0xFF00FF00;
+            return ag | rb;
+        }
+    }
+
+    /**
+     * 按行二分的并行任务
+     */
+    private static final class RowTask extends RecursiveAction {
+
+        private final Warp warp;
+        private final int from;
+        private final int to;
+
+        RowTask(Warp warp, int from, int to) {
+            this.warp = warp;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_ROWS_PER_TASK * 2) {
+                warp.rows(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowTask(warp, from, mid), new RowTask(warp, mid, to));
+        }
+    }
+}
@@ -1,26 +1,45 @@
 package com.mazepeng.kaptcha.font;
 
 import com.mazepeng.kaptcha.api.IFontProvider;
+import com.mazepeng.kaptcha.api.ScaledFont;
 
 import java.awt.Font;
 
 /**
  * 默认字体提供器
+ * 字体在构造时创建一次，各个超采样倍数的派生字体在第一次使用时创建并缓存。
  */
 public class DefaultFontProvider implements IFontProvider {
 
     private final int fontSize;
+    private final Font font;
+    // 按超采样倍数缓存，并发时最多重复创建，结果相同
+    private final ScaledFont[] scaled = new ScaledFont[8];
 
     public DefaultFontProvider() {
-        this.fontSize = 32;
+        this(32);
     }
 
     public DefaultFontProvider(int fontSize) {
         this.fontSize = fontSize;
+        this.font = new Font("Arial", Font.BOLD, this.fontSize);
     }
 
     @Override
     public Font getFont() {
-        return new Font("Arial", Font.BOLD, this.fontSize);
+        return font;
     }
-}
\ No newline at end of file
+
+    @Override
+    public ScaledFont getScaledFont(int scale) {
+        if (scale >= scaled.length) {
+            return ScaledFont.create(font, scale);
+        }
+        ScaledFont result = scaled[scale];
+        if (result == null) {
+            result = ScaledFont.create(font, scale);
+            scaled[scale] = result;
+        }
+        return result;
+    }
+}
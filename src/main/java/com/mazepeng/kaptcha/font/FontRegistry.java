@@ -0,0 +1,244 @@
+package com.mazepeng.kaptcha.font;
+
+import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 字体注册表
+ * <p>
+ * 负责从 classpath 目录或文件系统目录中加载 .ttf / .otf 字体，并在整个进程内共享解析好的 Font 对象：
+ * - 每个字体文件只解析一次，多个字体提供器、多个 CaptchaProducer 共用同一批 Font。
+ * - 一个目录中的字体文件在执行器上并行解析。
+ * - 默认在第一次使用时才加载；也可以在启动时调用 preload 提前在后台加载。
+ */
+public final class FontRegistry {
+
+    /**
+     * 内置字体所在的 classpath 目录
+     */
+    public static final String DEFAULT_LOCATION = "/fonts";
+
+    private static final FontRegistry SHARED = new FontRegistry(ForkJoinPool.commonPool());
+
+    private final Executor executor;
+    // 按目录缓存加载结果
+    private final ConcurrentMap<String, CompletableFuture<List<Font>>> locations = new ConcurrentHashMap<>();
+    // 按文件缓存解析结果，同一个文件出现在多个目录中时也只解析一次
+    private final ConcurrentMap<String, CompletableFuture<Font>> files = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor 用于并行解析字体文件的执行器
+     */
+    public FontRegistry(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @return 进程内共享的字体注册表，使用 ForkJoinPool 公共池解析字体
+     */
+    public static FontRegistry getShared() {
+        return SHARED;
+    }
+
+    /**
+     * 获取 classpath 目录中的所有字体，第一次调用时加载
+     * @param location classpath 目录，如 "/fonts"
+     * @return 解析好的字体（不可修改），目录中没有字体时为空列表
+     */
+    public List<Font> getFonts(String location) {
+        return join(preload(location));
+    }
+
+    /**
+     * 获取文件系统目录中的所有字体，第一次调用时加载
+     */
+    public List<Font> getFonts(Path directory) {
+        return join(preload(directory));
+    }
+
+    /**
+     * 在后台开始加载 classpath 目录中的字体，已经加载过（或正在加载）时直接返回同一个结果
+     */
+    public CompletableFuture<List<Font>> preload(String location) {
+        Objects.requireNonNull(location);
+        return load("classpath:" + location, () -> listClasspath(location));
+    }
+
+    /**
+     * 在后台开始加载文件系统目录中的字体，已经加载过（或正在加载）时直接返回同一个结果
+     */
+    public CompletableFuture<List<Font>> preload(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        return load(dir.toUri().toString(), () -> listDirectory(dir));
+    }
+
+    private CompletableFuture<List<Font>> load(String key, FontLister lister) {
+        CompletableFuture<List<Font>> existing = locations.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<List<Font>> created = new CompletableFuture<>();
+        existing = locations.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                List<FontSource> sources = lister.list();
+                // 目录的遍历顺序与文件系统有关，按文件名排序，保证固定种子在任何环境下都选中同一个字体
+                sources.sort(Comparator.comparing((FontSource source) -> source.name).thenComparing(source -> source.key));
+                List<CompletableFuture<Font>> parsing = new ArrayList<>(sources.size());
+                for (FontSource source : sources) {
+                    parsing.add(files.computeIfAbsent(source.key,
+                            k -> CompletableFuture.supplyAsync(source::parse, executor)));
+                }
+                CompletableFuture.allOf(parsing.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+                    List<Font> fonts = new ArrayList<>(parsing.size());
+                    for (CompletableFuture<Font> f : parsing) {
+                        Font font = f.isCompletedExceptionally() ? null : f.join();
+                        if (font != null) {
+                            fonts.add(font);
+                        }
+                    }
+                    created.complete(Collections.unmodifiableList(fonts));
+                });
+            } catch (RuntimeException e) {
+                // 目录本身读取失败时不缓存，下次调用重新尝试
+                locations.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        }, executor);
+        return created;
+    }
+
+    private static List<Font> join(CompletableFuture<List<Font>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 列出 classpath 目录中的字体文件，同时支持普通目录和 jar 包
+     */
+    private static List<FontSource> listClasspath(String location) {
+        URL url = FontRegistry.class.getResource(location);
+        if (url == null) {
+            throw new CaptchaGenerationException("无法读取字体目录: " + location);
+        }
+        String prefix = location.endsWith("/") ? location : location + "/";
+        List<FontSource> sources = new ArrayList<>();
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                // 只在列目录时打开 jar 文件系统，字体内容通过 getResourceAsStream 读取
+                FileSystem fileSystem = null;
+                boolean opened = false;
+                try {
+                    try {
+                        fileSystem = FileSystems.getFileSystem(uri);
+                    } catch (FileSystemNotFoundException e) {
+                        fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
+                        opened = true;
+                    }
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileSystem.getPath(location), "*.{ttf,otf}")) {
+                        for (Path entry : stream) {
+                            String name = entry.getFileName().toString();
+                            String resource = prefix + name;
+                            sources.add(new FontSource(uri + "!" + name, name, () -> FontRegistry.class.getResourceAsStream(resource)));
+                        }
+                    }
+                } finally {
+                    if (opened) {
+                        fileSystem.close();
+                    }
+                }
+            } else {
+                sources.addAll(listDirectory(Paths.get(uri)));
+            }
+        } catch (URISyntaxException | IOException e) {
+            throw new CaptchaGenerationException("无法读取字体目录: " + location, e);
+        }
+        return sources;
+    }
+
+    /**
+     * 列出文件系统目录中的字体文件
+     */
+    private static List<FontSource> listDirectory(Path directory) {
+        List<FontSource> sources = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{ttf,otf}")) {
+            for (Path entry : stream) {
+                Path file = entry.toAbsolutePath().normalize();
+                sources.add(new FontSource(file.toUri().toString(), file.getFileName().toString(),
+                        () -> Files.newInputStream(file)));
+            }
+        } catch (IOException e) {
+            throw new CaptchaGenerationException("无法读取字体目录: " + directory, e);
+        }
+        return sources;
+    }
+
+    @FunctionalInterface
+    private interface FontLister {
+        List<FontSource> list();
+    }
+
+    @FunctionalInterface
+    private interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 一个待解析的字体文件
+     */
+    private static final class FontSource {
+        final String key;
+        final String name;
+        final StreamOpener opener;
+
+        FontSource(String key, String name, StreamOpener opener) {
+            this.key = key;
+            this.name = name;
+            this.opener = opener;
+        }
+
+        /**
+         * @return 解析好的字体，失败时输出警告并返回 null
+         */
+        Font parse() {
+            try (InputStream is = opener.open()) {
+                if (is == null) {
+                    throw new IOException("resource not found");
+                }
+                return Font.createFont(Font.TRUETYPE_FONT, is);
+            } catch (FontFormatException | IOException e) {
+                System.err.println("加载字体失败: " + name + " - " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
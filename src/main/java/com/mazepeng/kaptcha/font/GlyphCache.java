@@ -0,0 +1,328 @@
+package com.mazepeng.kaptcha.font;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.text.Bidi;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 字形缓存
+ * <p>
+ * 按 (字体, 字号, 字符) 缓存预先光栅化好的抗锯齿灰度蒙版和字宽。
+ * 绘制文字时直接把蒙版按颜色混合到画布的像素数组中，不再每次都经过 Java2D 的文字渲染管线。
+ * - 每个字体的字形表在第一次使用时才创建，字形在第一次绘制时才光栅化。
+ * - 缓存的字体数量和每个字体的字形数量都有上限。字形表满了之后，没有缓存的字符改用 Java2D 的 drawString 绘制，
+ *   不会每次临时光栅化（字符集很大时，如常用汉字，临时光栅化比 drawString 慢得多）。
+ */
+public final class GlyphCache {
+
+    private static final GlyphCache SHARED = new GlyphCache(64, 1024);
+
+    // Latin-1 范围内的字符使用数组直接索引，其余字符使用哈希表
+    private static final int DIRECT_RANGE = 256;
+
+    private final int maxFonts;
+    private final int maxGlyphsPerFont;
+    private final ConcurrentMap<Font, GlyphSet> fonts = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxFonts         最多缓存的字体（含字号）数量
+     * @param maxGlyphsPerFont 每个字体最多缓存的字形数量
+     */
+    public GlyphCache(int maxFonts, int maxGlyphsPerFont) {
+        if (maxFonts <= 0 || maxGlyphsPerFont <= 0) {
+            throw new IllegalArgumentException("Cache limits must be greater than 0.");
+        }
+        this.maxFonts = maxFonts;
+        this.maxGlyphsPerFont = maxGlyphsPerFont;
+    }
+
+    /**
+     * @return 进程内共享的默认字形缓存
+     */
+    public static GlyphCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @return 当前缓存的字体数量
+     */
+    public int size() {
+        return fonts.size();
+    }
+
+    /**
+     * 获取某个字体的字形表，不存在时创建
+     * @param font 已经派生好最终字号的字体
+     * @return 该字体的字形表
+     */
+    public GlyphSet forFont(Font font) {
+        GlyphSet set = fonts.get(font);
+        if (set != null) {
+            return set;
+        }
+        if (fonts.size() >= maxFonts) {
+            // 超出上限时随意淘汰一些字体，被淘汰的字体下次使用时重新构建
+            Iterator<Font> it = fonts.keySet().iterator();
+            while (fonts.size() >= maxFonts && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return fonts.computeIfAbsent(font, f -> new GlyphSet(f, maxGlyphsPerFont));
+    }
+
+    /**
+     * 文本是否可以逐字使用缓存的字形绘制。需要复杂排版（如阿拉伯文连写、组合字符）的文本不适用。
+     */
+    public static boolean supports(String text) {
+        char[] chars = text.toCharArray();
+        if (Bidi.requiresBidi(chars, 0, chars.length)) {
+            return false;
+        }
+        for (char ch : chars) {
+            if (requiresLayout(ch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 单个字符是否需要复杂排版：代理对、组合字符、零宽连接符等格式字符，以及字形随上下文变化的文字（印度系、泰文、藏文等）。
+     * 与 JDK 9 的 Font.textRequiresLayout 判断的范围大体一致，只使用 Java 8 的 API。
+     */
+    private static boolean requiresLayout(char ch) {
+        if (ch < 0x0300) {
+            return false;
+        }
+        if (Character.isSurrogate(ch)) {
+            return true;
+        }
+        switch (Character.getType(ch)) {
+            case Character.NON_SPACING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.FORMAT:
+                return true;
+            default:
+                break;
+        }
+        return (ch >= 0x0900 && ch <= 0x109F)     // 印度系文字、泰文、老挝文、藏文、缅甸文
+                || (ch >= 0x1100 && ch <= 0x11FF) // 谚文字母（需要组合）
+                || (ch >= 0x1780 && ch <= 0x18AF) // 高棉文、蒙古文
+                || (ch >= 0xA960 && ch <= 0xA97F) // 谚文字母扩展 A
+                || (ch >= 0xD7B0 && ch <= 0xD7FF); // 谚文字母扩展 B
+    }
+
+    /**
+     * 单个字体的字形表
+     */
+    public static final class GlyphSet {
+
+        private final Font font;
+        private final int maxGlyphs;
+        private final AtomicReferenceArray<Glyph> direct = new AtomicReferenceArray<>(DIRECT_RANGE);
+        private final ConcurrentMap<Character, Glyph> others = new ConcurrentHashMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        GlyphSet(Font font, int maxGlyphs) {
+            this.font = Objects.requireNonNull(font);
+            this.maxGlyphs = maxGlyphs;
+        }
+
+        public Font getFont() {
+            return font;
+        }
+
+        /**
+         * 获取一个字符的字形，第一次访问时光栅化并缓存
+         * @return 字形；字形表已满且该字符没有缓存时返回 null，调用方应改用 Java2D 绘制。
+         *         临时光栅化一个字形需要创建两张图片并扫描整块画布，比直接 drawString 慢得多
+         */
+        public Glyph get(char ch) {
+            Glyph glyph = ch < DIRECT_RANGE ? direct.get(ch) : others.get(ch);
+            if (glyph != null) {
+                return glyph;
+            }
+            if (count.get() >= maxGlyphs) {
+                return null;
+            }
+            glyph = Glyph.rasterize(font, ch);
+            boolean stored = ch < DIRECT_RANGE
+                    ? direct.compareAndSet(ch, null, glyph)
+                    : others.putIfAbsent(ch, glyph) == null;
+            if (stored) {
+                count.incrementAndGet();
+            }
+            return glyph;
+        }
+
+        /**
+         * @return 已缓存的字形数量
+         */
+        public int size() {
+            return count.get();
+        }
+    }
+
+    /**
+     * 一个已光栅化的字形：灰度覆盖率蒙版 + 相对基线原点的偏移 + 字宽
+     */
+    public static final class Glyph {
+
+        private final byte[] alpha;
+        private final int width;
+        private final int height;
+        private final int offsetX;
+        private final int offsetY;
+        private final int advance;
+
+        private Glyph(byte[] alpha, int width, int height, int offsetX, int offsetY, int advance) {
+            this.alpha = alpha;
+            this.width = width;
+            this.height = height;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.advance = advance;
+        }
+
+        /**
+         * @return 字宽，与 FontMetrics.charWidth 一致
+         */
+        public int getAdvance() {
+            return advance;
+        }
+
+        /**
+         * 把字形按指定颜色以 SrcOver 方式混合到 ARGB 像素数组中
+         * @param pixels   TYPE_INT_ARGB 画布的像素数组
+         * @param offset   画布左上角在数组中的下标
+         * @param scanline 每行的像素跨度
+         * @param canvasW  画布宽度
+         * @param canvasH  画布高度
+         * @param x        基线原点 x
+         * @param y        基线原点 y
+         * @param argb     文字颜色
+         */
+        public void drawTo(int[] pixels, int offset, int scanline, int canvasW, int canvasH, int x, int y, int argb) {
+            int colorAlpha = argb >>> 24;
+            if (colorAlpha == 0) {
+                return;
+            }
+            int sr = (argb >> 16) & 0xFF;
+            int sg = (argb >> 8) & 0xFF;
+            int sb = argb & 0xFF;
+
+            int left = x + offsetX;
+            int top = y + offsetY;
+            int colStart = Math.max(0, -left);
+            int colEnd = Math.min(width, canvasW - left);
+            int rowStart = Math.max(0, -top);
+            int rowEnd = Math.min(height, canvasH - top);
+
+            for (int row = rowStart; row < rowEnd; row++) {
+                int src = row * width;
+                int dst = offset + (top + row) * scanline + left;
+                for (int col = colStart; col < colEnd; col++) {
+                    int a = alpha[src + col] & 0xFF;
+                    if (a == 0) {
+                        continue;
+                    }
+                    if (colorAlpha != 0xFF) {
+                        a = a * colorAlpha / 255;
+                    }
+                    int d = pixels[dst + col];
+                    int da = d >>> 24;
+                    if (a == 0xFF) {
+                        pixels[dst + col] = 0xFF000000 | (sr << 16) | (sg << 8) | sb;
+                    } else if (da == 0xFF) {
+                        int ia = 255 - a;
+                        int r = (sr * a + ((d >> 16) & 0xFF) * ia) / 255;
+                        int gr = (sg * a + ((d >> 8) & 0xFF) * ia) / 255;
+                        int b = (sb * a + (d & 0xFF) * ia) / 255;
+                        pixels[dst + col] = 0xFF000000 | (r << 16) | (gr << 8) | b;
+                    } else {
+                        // 非预乘 ARGB 的通用 SrcOver 混合
+                        int dw = da * (255 - a) / 255;
+                        int oa = a + dw;
+                        if (oa == 0) {
+                            continue;
+                        }
+                        int r = (sr * a + ((d >> 16) & 0xFF) * dw) / oa;
+                        int gr = (sg * a + ((d >> 8) & 0xFF) * dw) / oa;
+                        int b = (sb * a + (d & 0xFF) * dw) / oa;
+                        pixels[dst + col] = (oa << 24) | (r << 16) | (gr << 8) | b;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 使用与 Captcha 相同的渲染设置把单个字符画到灰度图上，并裁剪出非空区域
+         */
+        static Glyph rasterize(Font font, char ch) {
+            BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D pg = probe.createGraphics();
+            applyTextHints(pg);
+            FontMetrics fm = pg.getFontMetrics(font);
+            pg.dispose();
+
+            int advance = fm.charWidth(ch);
+            int pad = font.getSize() / 2 + 2;
+            int ascent = fm.getMaxAscent();
+            int w = Math.max(advance, fm.getMaxAdvance()) + pad * 2;
+            int h = ascent + fm.getMaxDescent() + pad * 2;
+            int originX = pad;
+            int originY = pad + ascent;
+
+            BufferedImage canvas = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = canvas.createGraphics();
+            try {
+                applyTextHints(g);
+                g.setFont(font);
+                g.setColor(Color.WHITE);
+                g.drawString(String.valueOf(ch), originX, originY);
+            } finally {
+                g.dispose();
+            }
+
+            byte[] gray = ((DataBufferByte) canvas.getRaster().getDataBuffer()).getData();
+            int minX = w, minY = h, maxX = -1, maxY = -1;
+            for (int yy = 0; yy < h; yy++) {
+                for (int xx = 0; xx < w; xx++) {
+                    if (gray[yy * w + xx] != 0) {
+                        if (xx < minX) minX = xx;
+                        if (xx > maxX) maxX = xx;
+                        if (yy < minY) minY = yy;
+                        if (yy > maxY) maxY = yy;
+                    }
+                }
+            }
+            if (maxX < 0) {
+                // 空白字符（如空格）只有字宽
+                return new Glyph(new byte[0], 0, 0, 0, 0, advance);
+            }
+
+            int gw = maxX - minX + 1;
+            int gh = maxY - minY + 1;
+            byte[] mask = new byte[gw * gh];
+            for (int yy = 0; yy < gh; yy++) {
+                System.arraycopy(gray, (minY + yy) * w + minX, mask, yy * gw, gw);
+            }
+            return new Glyph(mask, gw, gh, minX - originX, minY - originY, advance);
+        }
+
+        private static void applyTextHints(Graphics2D g) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        }
+    }
+}
@@ -1,28 +1,29 @@
 package com.mazepeng.kaptcha.font;
 
 import com.mazepeng.kaptcha.api.IFontProvider;
-import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.ScaledFont;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
 
 import java.awt.Font;
-import java.awt.FontFormatException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 随机字体提供器
- * 从项目的 resources/fonts 目录中加载所有字体，并随机选择一个使用。
+ * 从项目的 resources/fonts 目录（或指定的字体列表）中随机选择一个字体使用。
+ * 字体文件由进程内共享的 FontRegistry 解析，多个提供器实例不会重复加载。
+ * 所有字体在构造时就派生为粗体和指定字号，各个超采样倍数的派生字体在第一次使用时创建并缓存。
  */
 public class RandomFontProvider implements IFontProvider {
 
+    private static final int MAX_CACHED_SCALE = 8;
+
     private final List<Font> fonts;
     private final int fontSize;
+    // 按 [字体下标][超采样倍数] 缓存，并发时最多重复创建，结果相同
+    private final ScaledFont[][] scaled;
 
     /**
      * 默认构造函数，字体大小为32
@@ -32,65 +33,53 @@ public class RandomFontProvider implements IFontProvider {
     }
 
     /**
-     * 构造函数
+     * 构造函数，使用内置的 resources/fonts 目录中的字体
      * @param fontSize 字体大小
      */
     public RandomFontProvider(int fontSize) {
-        this.fontSize = fontSize;
-        this.fonts = loadFontsFromResources();
+        this(fontSize, FontRegistry.getShared().getFonts(FontRegistry.DEFAULT_LOCATION));
     }
 
     /**
-     * 从 resources/fonts 目录加载字体文件
-     * @return 加载好的字体列表
+     * 构造函数，从给定的字体中随机选择，例如 FontRegistry 从其他目录加载的字体
+     * @param fontSize 字体大小
+     * @param fonts    候选字体，为空时回退到默认字体
      */
-    private List<Font> loadFontsFromResources() {
-        List<Font> loadedFonts = new ArrayList<>();
-        String fontDir = "/fonts";
-
-        try {
-            URI uri = RandomFontProvider.class.getResource(fontDir).toURI();
-            Path fontPath;
-
-            // 处理在 jar 包内和在普通文件系统中的不同情况
-            if ("jar".equals(uri.getScheme())) {
-                try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
-                    fontPath = fileSystem.getPath(fontDir);
-                }
-            } else {
-                fontPath = Paths.get(uri);
-            }
-
-            // 遍历目录下的所有 .ttf 和 .otf 文件
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fontPath, "*.{ttf,otf}")) {
-                for (Path entry : stream) {
-                    try (InputStream is = Files.newInputStream(entry)) {
-                        Font font = Font.createFont(Font.TRUETYPE_FONT, is);
-                        loadedFonts.add(font);
-                    } catch (FontFormatException | IOException e) {
-                        System.err.println("加载字体失败: " + entry.getFileName() + " - " + e.getMessage());
-                    }
-                }
-            }
-        } catch (URISyntaxException | IOException | NullPointerException e) {
-            throw new CaptchaGenerationException("无法读取字体目录: " + fontDir, e);
+    public RandomFontProvider(int fontSize, List<Font> fonts) {
+        this.fontSize = fontSize;
+        List<Font> derived = new ArrayList<>();
+        for (Font font : fonts) {
+            derived.add(font.deriveFont(Font.BOLD, this.fontSize));
         }
-
-        if (loadedFonts.isEmpty()) {
-            System.err.println("警告: 字体目录 '" + fontDir + "' 中没有找到任何字体文件，将回退到默认字体。");
-            // 添加一个默认字体作为后备
-            loadedFonts.add(new Font("Arial", Font.BOLD, this.fontSize));
+        if (derived.isEmpty()) {
+            System.err.println("警告: 没有找到任何字体文件，将回退到默认字体。");
+            derived.add(new Font("Arial", Font.BOLD, this.fontSize));
         }
-
-        return loadedFonts;
+        this.fonts = Collections.unmodifiableList(derived);
+        this.scaled = new ScaledFont[this.fonts.size()][MAX_CACHED_SCALE];
     }
 
     @Override
     public Font getFont() {
-        if (fonts.isEmpty()) {
-            return new Font("Arial", Font.BOLD, this.fontSize);
+        return fonts.get(ThreadLocalRandomSource.getInstance().nextInt(fonts.size()));
+    }
+
+    @Override
+    public ScaledFont getScaledFont(int scale) {
+        return getScaledFont(scale, ThreadLocalRandomSource.getInstance());
+    }
+
+    @Override
+    public ScaledFont getScaledFont(int scale, IRandomSource random) {
+        int index = random.nextInt(fonts.size());
+        if (scale >= MAX_CACHED_SCALE) {
+            return ScaledFont.create(fonts.get(index), scale);
+        }
+        ScaledFont result = scaled[index][scale];
+        if (result == null) {
+            result = ScaledFont.create(fonts.get(index), scale);
+            scaled[index][scale] = result;
         }
-        Font baseFont = fonts.get(ThreadLocalRandom.current().nextInt(fonts.size()));
-        return baseFont.deriveFont(Font.BOLD, this.fontSize);
+        return result;
     }
 }
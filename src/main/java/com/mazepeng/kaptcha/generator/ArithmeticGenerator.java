@@ -1,9 +1,8 @@
 package com.mazepeng.kaptcha.generator;
 
 import com.mazepeng.kaptcha.api.CaptchaContent;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
 
 /**
  * 支持四则运算的算术题生成器
@@ -11,11 +10,37 @@ import java.util.List;
  * 通过逻辑约束保证生成的题目易于计算：
  * - 减法：确保被减数大于减数，避免负数结果。
  * - 乘法：操作数限制在较小范围内（例如1-10），避免结果过大。
- * - 除法：通过“反向生成”（先生成结果和除数，再计算被除数）来确保能够整除。
+ * - 除法：被除数不超过操作数上限的 2 倍，并且能够整除。
+ * 构造时按运算符列出所有满足约束的题目，以 (左操作数, 右操作数) 的形式按左操作数排序存放在 int 数组中，
+ * 生成时先按权重选择运算符，再在该运算符的题目中均匀抽取一道，没有重试。
+ * 数字的字符串预先生成；题目总数不多时（默认配置下约 200 道）整道题的 CaptchaContent 也预先生成，每次直接复用。
+ * 多步题目（如 "(3 + 4) × 2 = ?"）每一步都以上一步的结果作为左操作数，从同一批题目中抽取。
  */
 public class ArithmeticGenerator extends AbstractGenerator {
 
+    // 题目总数不超过该值时预先生成所有单步题目的 CaptchaContent
+    private static final int MAX_CACHED_CONTENTS = 4096;
+    // 题目总数上限，约 16 MB
+    private static final int MAX_PROBLEMS = 1 << 22;
+    private static final int MAX_STEPS = 3;
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+    private static final int DIVIDE = 3;
+    private static final String[] SYMBOLS = {" + ", " - ", " × ", " ÷ "};
+
     private final int maxOperand;
+    private final int steps;
+    // 各运算符的累计权重，cumulativeWeights[3] 为总权重
+    private final int[] cumulativeWeights;
+    // 各运算符的题目，每个元素为 (left << 16) | right，按 left 升序
+    private final int[][] problems;
+    // 各运算符中左操作数为 left 的题目位于 [starts[op][left], starts[op][left + 1])
+    private final int[][] starts;
+    private final String[] numbers;
+    // 各运算符的单步题目，题目太多或生成多步题目时为 null
+    private final CaptchaContent[][] contents;
 
     /**
      * 默认构造函数，操作数范围为 1-10
@@ -30,79 +55,251 @@ public class ArithmeticGenerator extends AbstractGenerator {
      * @param maxOperand 参与运算的数字的最大值（例如10，则数字范围为1-10）
      */
     public ArithmeticGenerator(int maxOperand) {
-        if (maxOperand < 2) {
-            throw new IllegalArgumentException("Max operand must be at least 2.");
+        this(new Builder().maxOperand(maxOperand));
+    }
+
+    private ArithmeticGenerator(Builder builder) {
+        this.maxOperand = builder.maxOperand;
+        this.steps = builder.steps;
+        this.cumulativeWeights = new int[4];
+        int total = 0;
+        for (int op = 0; op < 4; op++) {
+            total += builder.weights[op];
+            cumulativeWeights[op] = total;
+        }
+
+        int multiplyMax = maxOperand / 2 + 1;
+        long problemCount = 2L * maxOperand * maxOperand + (long) (multiplyMax + 1) * (multiplyMax + 1);
+        if (problemCount > MAX_PROBLEMS) {
+            throw new IllegalArgumentException("Max operand is too large.");
+        }
+        this.problems = new int[4][];
+        this.starts = new int[4][];
+        list(ADD, 1, maxOperand, 1, maxOperand);
+        list(SUBTRACT, 1, maxOperand, 1, maxOperand);
+        list(MULTIPLY, 0, multiplyMax, 0, multiplyMax);
+        list(DIVIDE, 0, maxOperand * 2, 2, maxOperand);
+
+        int maxValue = Math.max(maxOperand * 2, multiplyMax * multiplyMax);
+        this.numbers = new String[maxValue + 1];
+        for (int i = 0; i <= maxValue; i++) {
+            numbers[i] = String.valueOf(i);
+        }
+
+        int count = problems[ADD].length + problems[SUBTRACT].length + problems[MULTIPLY].length + problems[DIVIDE].length;
+        if (steps == 1 && count <= MAX_CACHED_CONTENTS) {
+            this.contents = new CaptchaContent[4][];
+            for (int op = 0; op < 4; op++) {
+                contents[op] = new CaptchaContent[problems[op].length];
+                for (int i = 0; i < problems[op].length; i++) {
+                    contents[op][i] = single(op, problems[op][i]);
+                }
+            }
+        } else {
+            this.contents = null;
         }
-        this.maxOperand = maxOperand;
     }
 
-    @Override
-    public CaptchaContent generate() {
-        char op = "+-*/".charAt(getRandom().nextInt(4));
+    /**
+     * 列出某个运算符在给定范围内的所有有效题目，按左操作数排序
+     */
+    private void list(int op, int leftMin, int leftMax, int rightMin, int rightMax) {
+        // 第一遍统计每个左操作数的题目数量，第二遍按位置填入，不需要临时数组
+        int[] offsets = new int[leftMax + 2];
+        for (int left = leftMin; left <= leftMax; left++) {
+            int count = 0;
+            for (int right = rightMin; right <= rightMax; right++) {
+                if (valid(op, left, right)) {
+                    count++;
+                }
+            }
+            offsets[left + 1] = count;
+        }
+        for (int left = 0; left <= leftMax; left++) {
+            offsets[left + 1] += offsets[left];
+        }
+        int[] table = new int[offsets[leftMax + 1]];
+        for (int left = leftMin; left <= leftMax; left++) {
+            int n = offsets[left];
+            for (int right = rightMin; right <= rightMax; right++) {
+                if (valid(op, left, right)) {
+                    table[n++] = (left << 16) | right;
+                }
+            }
+        }
+        problems[op] = table;
+        starts[op] = offsets;
+    }
+
+    private boolean valid(int op, int left, int right) {
         switch (op) {
-            case '+':
-                return generateAddition();
-            case '-':
-                return generateSubtraction();
-            case '*':
-                return generateMultiplication();
-            case '/':
-                return generateDivision();
+            case SUBTRACT:
+                // 确保被减数大于等于减数
+                return left >= right;
+            case DIVIDE:
+                // 能够整除，商不超过乘法的操作数上限
+                return left % right == 0 && left / right <= maxOperand / 2 + 1;
             default:
-                throw new IllegalStateException("Unreachable code");
+                return true;
         }
     }
 
-
-    private CaptchaContent generateAddition() {
-        int num1 = getRandom().nextInt(maxOperand) + 1;
-        int num2 = getRandom().nextInt(maxOperand) + 1;
-        String text = String.valueOf(num1 + num2);
-        String drawText = num1 + " + " + num2 + " = ?";
-        return new CaptchaContent(text, drawText);
+    @Override
+    public CaptchaContent generate() {
+        return generate(ThreadLocalRandomSource.getInstance());
     }
 
-    private CaptchaContent generateSubtraction() {
-        int num1 = getRandom().nextInt(maxOperand) + 1;
-        int num2 = getRandom().nextInt(maxOperand) + 1;
+    @Override
+    public CaptchaContent generate(IRandomSource random) {
+        int op = pickOperator(random, -1);
+        int index = random.nextInt(problems[op].length);
+        int problem = problems[op][index];
+        if (steps == 1) {
+            return contents != null ? contents[op][index] : single(op, problem);
+        }
 
-        // 确保被减数大于等于减数
-        if (num1 < num2) {
-            int temp = num1;
-            num1 = num2;
-            num2 = temp;
+        int value = apply(op, problem >>> 16, problem & 0xFFFF);
+        StringBuilder sb = new StringBuilder(16 * steps);
+        sb.append(numbers[problem >>> 16]).append(SYMBOLS[op]).append(numbers[problem & 0xFFFF]);
+        boolean additive = op == ADD || op == SUBTRACT;
+        for (int step = 1; step < steps; step++) {
+            // 下一步只从左操作数等于当前结果的题目中抽取，没有可用的题目时提前结束
+            op = pickOperator(random, value);
+            if (op < 0) {
+                break;
+            }
+            int from = starts[op][value];
+            problem = problems[op][from + random.nextInt(starts[op][value + 1] - from)];
+            boolean multiplicative = op == MULTIPLY || op == DIVIDE;
+            if (multiplicative && additive) {
+                sb.insert(0, '(').append(')');
+            }
+            sb.append(SYMBOLS[op]).append(numbers[problem & 0xFFFF]);
+            value = apply(op, value, problem & 0xFFFF);
+            additive = !multiplicative;
         }
-        String text = String.valueOf(num1 - num2);
-        String drawText = num1 + " - " + num2 + " = ?";
-        return new CaptchaContent(text, drawText);
+        sb.append(" = ?");
+        return new CaptchaContent(numbers[value], sb.toString());
     }
 
-    private CaptchaContent generateMultiplication() {
-        int num1 = getRandom().nextInt(maxOperand / 2 + 2);
-        int num2 = getRandom().nextInt(maxOperand / 2 + 2);
-        String text = String.valueOf(num1 * num2);
-        String drawText = num1 + " × " + num2 + " = ?";
-        return new CaptchaContent(text, drawText);
+    /**
+     * 按权重选择运算符
+     * @param left 为负数时在所有运算符中选择，否则只在存在以 left 为左操作数的题目的运算符中选择
+     * @return 运算符，没有可选的运算符时返回 -1
+     */
+    private int pickOperator(IRandomSource random, int left) {
+        if (left < 0) {
+            int r = random.nextInt(cumulativeWeights[3]);
+            int op = 0;
+            while (r >= cumulativeWeights[op]) {
+                op++;
+            }
+            return op;
+        }
+        int total = 0;
+        for (int op = 0; op < 4; op++) {
+            total += available(op, left) ? weight(op) : 0;
+        }
+        if (total == 0) {
+            return -1;
+        }
+        int r = random.nextInt(total);
+        for (int op = 0; op < 4; op++) {
+            if (available(op, left)) {
+                r -= weight(op);
+                if (r < 0) {
+                    return op;
+                }
+            }
+        }
+        return -1;
     }
 
-    private CaptchaContent generateDivision() {
-        int dividend;
-        int divisor;
-        int quotient;
+    private boolean available(int op, int left) {
+        int[] offsets = starts[op];
+        return left + 1 < offsets.length && offsets[left + 1] > offsets[left];
+    }
 
-        do {
-            // 1. 先随机生成除数和商（结果）
-            divisor = getRandom().nextInt(maxOperand - 1) + 2; // 除数不为0或1，从2开始
-            quotient = getRandom().nextInt(maxOperand / 2 + 2); // 商也不宜过大
+    private int weight(int op) {
+        return op == 0 ? cumulativeWeights[0] : cumulativeWeights[op] - cumulativeWeights[op - 1];
+    }
 
-            // 2. 计算出被除数
-            dividend = divisor * quotient;
+    private CaptchaContent single(int op, int problem) {
+        int left = problem >>> 16;
+        int right = problem & 0xFFFF;
+        String drawText = numbers[left] + SYMBOLS[op] + numbers[right] + " = ?";
+        return new CaptchaContent(numbers[apply(op, left, right)], drawText);
+    }
 
-            // 3. 如果被除数在合理范围内，则跳出循环
-        } while (dividend > (maxOperand * 2));
+    private static int apply(int op, int left, int right) {
+        switch (op) {
+            case ADD:
+                return left + right;
+            case SUBTRACT:
+                return left - right;
+            case MULTIPLY:
+                return left * right;
+            case DIVIDE:
+                return left / right;
+            default:
+                throw new IllegalStateException("Unreachable code");
+        }
+    }
+
+    /**
+     * Builder 类，用于配置操作数范围、运算符权重和题目步数
+     */
+    public static class Builder {
+
+        int maxOperand = 10;
+        int steps = 1;
+        final int[] weights = {1, 1, 1, 1};
+
+        /**
+         * 参与运算的数字的最大值，默认为 10
+         */
+        public Builder maxOperand(int maxOperand) {
+            if (maxOperand < 2) {
+                throw new IllegalArgumentException("Max operand must be at least 2.");
+            }
+            this.maxOperand = maxOperand;
+            return this;
+        }
+
+        /**
+         * 各运算符的权重，默认都为 1。权重为 0 的运算符不会出现在第一步中，后续步骤也只在权重大于 0 的运算符中选择
+         */
+        public Builder weights(int add, int subtract, int multiply, int divide) {
+            if (add < 0 || subtract < 0 || multiply < 0 || divide < 0) {
+                throw new IllegalArgumentException("Weights must not be negative.");
+            }
+            long total = (long) add + subtract + multiply + divide;
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Total weight is too large.");
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("At least one weight must be greater than 0.");
+            }
+            weights[ADD] = add;
+            weights[SUBTRACT] = subtract;
+            weights[MULTIPLY] = multiply;
+            weights[DIVIDE] = divide;
+            return this;
+        }
 
-        String text = String.valueOf(quotient);
-        String drawText = dividend + " ÷ " + divisor + " = ?";
-        return new CaptchaContent(text, drawText);
+        /**
+         * 每道题的运算步数（1 到 3），默认为 1。当前结果没有可以继续运算的题目时会提前结束
+         */
+        public Builder steps(int steps) {
+            if (steps < 1 || steps > MAX_STEPS) {
+                throw new IllegalArgumentException("Steps must be between 1 and " + MAX_STEPS + ".");
+            }
+            this.steps = steps;
+            return this;
+        }
+
+        public ArithmeticGenerator build() {
+            return new ArithmeticGenerator(this);
+        }
     }
-}
\ No newline at end of file
+}
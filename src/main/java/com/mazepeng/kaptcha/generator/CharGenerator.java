@@ -1,29 +1,214 @@
 package com.mazepeng.kaptcha.generator;
 
 import com.mazepeng.kaptcha.api.CaptchaContent;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
 
 /**
  * 默认的随机字符生成器
+ * <p>
+ * 字符集可以配置，也可以排除容易混淆的字符（如 0/O、1/l/I），或者使用非拉丁字符（需要字体支持对应的字形）。
+ * 每次从随机数来源取一个 64 位随机数，把它当作字符集大小为进制的整数，一次拆出多个字符：
+ * - 每个随机数拆出 k 个字符，k 取使 n^k 不超过 2^55 的最大值（n 为字符集大小，如 62 个字符时 k = 9）。
+ * - 随机数落在 n^k 的最大整数倍之外时丢弃重取，拆出的每个字符都严格均匀分布，没有取模偏差；重取的概率低于 1/256。
+ * 批量生成时相邻的验证码共用同一个随机数剩下的字符，直接写入 char 数组，不创建中间对象。
  */
 public class CharGenerator extends AbstractGenerator {
 
+    /**
+     * 大小写字母和数字，默认字符集
+     */
+    public static final String ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    /**
+     * 数字
+     */
+    public static final String DIGITS = "0123456789";
+    /**
+     * 字形容易混淆的字符
+     */
+    public static final String AMBIGUOUS = "0Oo1lIi";
+
+    // 每个 64 位随机数只使用低 55 位以内的范围，重取的概率低于 2^55 / 2^63 = 1/256
+    private static final long MAX_BLOCK = 1L << 55;
+
     private final int len;
-    private final String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private final char[] chars;
+    // 每个随机数拆出的字符数
+    private final int perDraw;
+    // 字符集大小的 perDraw 次方
+    private final long block;
+    // 小于该值的非负随机数才使用，是 block 的整数倍
+    private final long limit;
 
     public CharGenerator(int len) {
-        if (len <= 0) {
-            throw new IllegalArgumentException("Length must be greater than 0.");
+        this(new Builder().length(len));
+    }
+
+    private CharGenerator(Builder builder) {
+        this.len = builder.length;
+        this.chars = builder.alphabet();
+        int n = chars.length;
+        int k = 1;
+        long b = n;
+        while (b <= MAX_BLOCK / n) {
+            b *= n;
+            k++;
         }
-        this.len = len;
+        this.perDraw = k;
+        this.block = b;
+        this.limit = Long.MAX_VALUE - Long.MAX_VALUE % b;
+    }
+
+    /**
+     * @return 字符集，返回副本
+     */
+    public char[] getAlphabet() {
+        return chars.clone();
     }
 
     @Override
     public CaptchaContent generate() {
-        StringBuilder sb = new StringBuilder(len);
-        for (int i = 0; i < len; i++) {
-            sb.append(chars.charAt(getRandom().nextInt(chars.length())));
+        return generate(ThreadLocalRandomSource.getInstance());
+    }
+
+    @Override
+    public CaptchaContent generate(IRandomSource random) {
+        char[] text = new char[len];
+        fill(text, 0, 1, random);
+        String answer = new String(text);
+        return new CaptchaContent(answer, answer);
+    }
+
+    /**
+     * 批量生成验证码文本
+     * @param count 数量
+     * @return 长度为 count * 每个验证码长度的数组，第 i 个验证码位于 [i * len, (i + 1) * len)
+     */
+    public char[] generate(int count) {
+        return generate(count, ThreadLocalRandomSource.getInstance());
+    }
+
+    /**
+     * 使用给定的随机数来源批量生成验证码文本
+     * @see #generate(int)
+     */
+    public char[] generate(int count, IRandomSource random) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+        if ((long) count * len > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Count is too large.");
+        }
+        char[] buffer = new char[count * len];
+        fill(buffer, 0, count, random);
+        return buffer;
+    }
+
+    /**
+     * 把 count 个验证码文本依次写入 buffer，适合预先生成验证码池时复用同一个缓冲区
+     * @param buffer 目标数组
+     * @param offset 第一个字符的下标
+     * @param count  数量
+     * @param random 随机数来源
+     */
+    public void fill(char[] buffer, int offset, int count, IRandomSource random) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+        if (offset < 0 || offset > buffer.length || count > (buffer.length - offset) / len) {
+            throw new IndexOutOfBoundsException("Buffer is too small.");
+        }
+        int end = offset + count * len;
+        char[] alphabet = chars;
+        long n = alphabet.length;
+        int i = offset;
+        while (i < end) {
+            long r;
+            do {
+                r = random.nextLong() >>> 1;
+            } while (r >= limit);
+            // r 在 [0, limit) 中均匀分布，limit 是 block 的整数倍，取余后在 [0, block) 中均匀分布
+            r %= block;
+            for (int k = Math.min(perDraw, end - i); k > 0; k--) {
+                buffer[i++] = alphabet[(int) (r % n)];
+                r /= n;
+            }
+        }
+    }
+
+    /**
+     * Builder 类，用于配置验证码长度和字符集
+     */
+    public static class Builder {
+
+        int length = 4;
+        String alphabet = ALPHANUMERIC;
+        String excluded = "";
+
+        /**
+         * 验证码长度，默认为 4
+         */
+        public Builder length(int length) {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Length must be greater than 0.");
+            }
+            this.length = length;
+            return this;
+        }
+
+        /**
+         * 字符集，默认为大小写字母和数字，重复的字符只保留一个
+         */
+        public Builder alphabet(String alphabet) {
+            if (alphabet == null) {
+                throw new IllegalArgumentException("Alphabet must not be null.");
+            }
+            for (int i = 0; i < alphabet.length(); i++) {
+                if (Character.isSurrogate(alphabet.charAt(i))) {
+                    throw new IllegalArgumentException("Alphabet must not contain surrogate characters.");
+                }
+            }
+            this.alphabet = alphabet;
+            return this;
+        }
+
+        /**
+         * 从字符集中排除的字符，可以多次调用
+         */
+        public Builder exclude(String chars) {
+            if (chars == null) {
+                throw new IllegalArgumentException("Excluded characters must not be null.");
+            }
+            this.excluded += chars;
+            return this;
+        }
+
+        /**
+         * 排除字形容易混淆的字符，见 {@link CharGenerator#AMBIGUOUS}
+         */
+        public Builder excludeAmbiguous() {
+            return exclude(AMBIGUOUS);
+        }
+
+        public CharGenerator build() {
+            return new CharGenerator(this);
+        }
+
+        /**
+         * 去掉重复和排除的字符后的字符集
+         */
+        char[] alphabet() {
+            StringBuilder sb = new StringBuilder(alphabet.length());
+            for (int i = 0; i < alphabet.length(); i++) {
+                char c = alphabet.charAt(i);
+                if (excluded.indexOf(c) < 0 && sb.indexOf(String.valueOf(c)) < 0) {
+                    sb.append(c);
+                }
+            }
+            if (sb.length() < 2) {
+                throw new IllegalArgumentException("Alphabet must contain at least 2 characters.");
+            }
+            return sb.toString().toCharArray();
         }
-        String text = sb.toString();
-        return new CaptchaContent(text, text);
     }
 }
@@ -1,30 +1,65 @@
 package com.mazepeng.kaptcha.interferer;
+import com.mazepeng.kaptcha.api.IColorizer;
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.color.PaletteColorizer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
 
 import java.awt.BasicStroke;
-import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.CubicCurve2D;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Objects;
 
 /**
  * 贝塞尔曲线干扰器
+ * 曲线颜色默认取自预先生成的随机调色板，绘制时不创建 Color 对象。
  */
 public class BesselCurveInterferer implements IInterferer {
 
+    // 默认调色板使用固定种子生成，所有实例共享，保证同一个种子渲染出的验证码可以复现
+    private static final IColorizer DEFAULT_COLORS = PaletteColorizer.random(256, new SeededRandomSource(0x42455A49L));
+
     private final int count;
+    private final IColorizer colorizer;
 
     public BesselCurveInterferer(int count) {
+        this(count, DEFAULT_COLORS);
+    }
+
+    /**
+     * @param count     曲线数量
+     * @param colorizer 曲线颜色，不能为 null
+     */
+    public BesselCurveInterferer(int count, IColorizer colorizer) {
         this.count = count;
+        this.colorizer = Objects.requireNonNull(colorizer);
     }
 
     @Override
     public void draw(Graphics2D g, int width, int height) {
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        g.setStroke(new BasicStroke(2.0f));
+        draw(new RenderContext(g, width, height, RenderContext.DEFAULT_SCALE));
+    }
+
+    @Override
+    public void draw(RenderContext context) {
+        Graphics2D g = context.getGraphics();
+        int width = context.getWidth();
+        int height = context.getHeight();
+        IRandomSource random = context.getRandom();
+        Rasterizer rasterizer = context.getRasterizer();
+        float lineWidth = context.scaled(2.0f);
+        if (rasterizer == null) {
+            g.setStroke(new BasicStroke(lineWidth));
+        }
         for (int i = 0; i < count; i++) {
-            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            int argb = 0;
+            if (rasterizer == null) {
+                g.setColor(colorizer.nextColor(random));
+            } else {
+                argb = colorizer.nextRgb(random);
+            }
             int x1 = 5, y1 = random.nextInt(height);
             int x2 = width - 5, y2 = random.nextInt(height);
 
@@ -33,7 +68,11 @@ public class BesselCurveInterferer implements IInterferer {
             int ctrlx2 = random.nextInt(width / 4) + width / 2;
             int ctrly2 = random.nextInt(height);
 
-            g.draw(new CubicCurve2D.Double(x1, y1, ctrlx1, ctrly1, ctrlx2, ctrly2, x2, y2));
+            if (rasterizer == null) {
+                g.draw(new CubicCurve2D.Double(x1, y1, ctrlx1, ctrly1, ctrlx2, ctrly2, x2, y2));
+            } else {
+                rasterizer.drawCubic(x1, y1, ctrlx1, ctrly1, ctrlx2, ctrly2, x2, y2, lineWidth, argb);
+            }
         }
     }
 }
\ No newline at end of file
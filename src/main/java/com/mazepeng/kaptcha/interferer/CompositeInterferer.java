@@ -1,6 +1,7 @@
 package com.mazepeng.kaptcha.interferer;
 
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.RenderContext;
 
 import java.awt.Graphics2D;
 import java.util.Arrays;
@@ -26,4 +27,13 @@ public class CompositeInterferer implements IInterferer {
             }
         }
     }
+
+    @Override
+    public void draw(RenderContext context) {
+        for (IInterferer interferer : interferers) {
+            if (interferer != null) {
+                interferer.draw(context);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -1,28 +1,68 @@
 package com.mazepeng.kaptcha.interferer;
 
+import com.mazepeng.kaptcha.api.IColorizer;
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.color.PaletteColorizer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
 
 import java.awt.*;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Objects;
 
 /**
  * 随机直线干扰器
+ * 线条颜色默认取自预先生成的随机调色板，绘制时不创建 Color 对象。
  */
 public class LineInterferer implements IInterferer {
 
+    // 默认调色板使用固定种子生成，所有实例共享，保证同一个种子渲染出的验证码可以复现
+    private static final IColorizer DEFAULT_COLORS = PaletteColorizer.random(256, new SeededRandomSource(0x4C494E45L));
+
     private final int count;
+    private final IColorizer colorizer;
 
     public LineInterferer(int count) {
+        this(count, DEFAULT_COLORS);
+    }
+
+    /**
+     * @param count     线条数量
+     * @param colorizer 线条颜色，不能为 null
+     */
+    public LineInterferer(int count, IColorizer colorizer) {
         this.count = count;
+        this.colorizer = Objects.requireNonNull(colorizer);
     }
 
     @Override
     public void draw(Graphics2D g, int width, int height) {
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        g.setStroke(new BasicStroke(1.5f));
+        draw(new RenderContext(g, width, height, RenderContext.DEFAULT_SCALE));
+    }
+
+    @Override
+    public void draw(RenderContext context) {
+        Graphics2D g = context.getGraphics();
+        int width = context.getWidth();
+        int height = context.getHeight();
+        IRandomSource random = context.getRandom();
+        Rasterizer rasterizer = context.getRasterizer();
+        float lineWidth = context.scaled(1.5f);
+        if (rasterizer != null) {
+            for (int i = 0; i < count; i++) {
+                int argb = colorizer.nextRgb(random);
+                int x1 = random.nextInt(width);
+                int y1 = random.nextInt(height);
+                int x2 = random.nextInt(width);
+                int y2 = random.nextInt(height);
+                rasterizer.drawLine(x1 + 0.5, y1 + 0.5, x2 + 0.5, y2 + 0.5, lineWidth, argb);
+            }
+            return;
+        }
+        g.setStroke(new BasicStroke(lineWidth));
         for (int i = 0; i < count; i++) {
-            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.setColor(colorizer.nextColor(random));
             int x1 = random.nextInt(width);
             int y1 = random.nextInt(height);
             int x2 = random.nextInt(width);
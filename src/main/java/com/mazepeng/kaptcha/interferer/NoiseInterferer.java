@@ -1,23 +1,56 @@
 package com.mazepeng.kaptcha.interferer;
 
+import com.mazepeng.kaptcha.api.IColorizer;
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.random.ThreadLocalRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
 
 import java.awt.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Objects;
 
 /**
  * 噪点干扰器
  * 在图片上随机画N个像素点
+ * <p>
+ * 画布支持直接访问像素时，把 ARGB 值直接写入像素数组，不创建 Color 对象，也不经过 Java2D 的 fillRect 管线；
+ * 半透明的颜色以 SrcOver 方式混合到原有像素上，与 fillRect 的效果一致。
+ * 默认使用完全随机的不透明颜色，也可以指定颜色选择器（通过 nextRgb() 取色）。
  */
 public class NoiseInterferer implements IInterferer {
 
+    // 默认的完全随机颜色，每个颜色只取一次 24 位随机数
+    private static final IColorizer DEFAULT_COLORS = new IColorizer() {
+        @Override
+        public Color nextColor() {
+            return new Color(nextRgb());
+        }
+
+        @Override
+        public int nextRgb() {
+            return nextRgb(ThreadLocalRandomSource.getInstance());
+        }
+
+        @Override
+        public Color nextColor(IRandomSource random) {
+            return new Color(nextRgb(random));
+        }
+
+        @Override
+        public int nextRgb(IRandomSource random) {
+            return 0xFF000000 | random.nextInt(0x1000000);
+        }
+    };
+
     private final float density; // 噪点密度，例如 0.7f
+    private final IColorizer colorizer;
 
     /**
      * 默认构造函数，使用中等密度
      */
     public NoiseInterferer() {
-        this.density = 0.7f;
+        this(0.7f);
     }
 
     /**
@@ -25,23 +58,66 @@ public class NoiseInterferer implements IInterferer {
      * @param density 噪点密度，取值范围建议在 0.1 - 1.0 之间
      */
     public NoiseInterferer(float density) {
+        this(density, DEFAULT_COLORS);
+    }
+
+    /**
+     * 构造函数
+     * @param density   噪点密度
+     * @param colorizer 噪点颜色，不能为 null
+     */
+    public NoiseInterferer(float density, IColorizer colorizer) {
         this.density = density;
+        this.colorizer = Objects.requireNonNull(colorizer);
     }
 
     @Override
     public void draw(Graphics2D g, int width, int height) {
+        draw(new RenderContext(g, width, height, RenderContext.DEFAULT_SCALE));
+    }
+
+    /**
+     * 通过 Graphics2D 逐个画点，画布不支持直接访问像素时使用
+     */
+    private void drawPoints(Graphics2D g, int width, int height, IRandomSource random) {
         // 计算要画的噪点数量 = 图片面积 * 密度 / 100
         int area = width * height;
         int noisePoints = (int) (area * density / 100.0f);
 
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-
         for (int i = 0; i < noisePoints; i++) {
             // 在随机位置画一个 1x1 的小方块
             int x = random.nextInt(width);
             int y = random.nextInt(height);
-            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.setColor(colorizer.nextColor(random));
             g.fillRect(x, y, 1, 1);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void draw(RenderContext context) {
+        int[] pixels = context.getPixels();
+        if (pixels == null) {
+            drawPoints(context.getGraphics(), context.getWidth(), context.getHeight(), context.getRandom());
+            return;
+        }
+
+        int width = context.getWidth();
+        int area = width * context.getHeight();
+        int noisePoints = (int) (area * density / 100.0f);
+        int offset = context.getOffset();
+        int scanline = context.getScanline();
+
+        IRandomSource random = context.getRandom();
+
+        for (int i = 0; i < noisePoints; i++) {
+            // 一次随机数同时决定行和列，一次随机数决定 24 位颜色
+            int p = random.nextInt(area);
+            int y = p / width;
+            int x = p - y * width;
+            int argb = colorizer.nextRgb(random);
+            int index = offset + y * scanline + x;
+            int a = argb >>> 24;
+            pixels[index] = a == 0xFF ? argb : Rasterizer.srcOver(pixels[index], argb, a);
+        }
+    }
+}
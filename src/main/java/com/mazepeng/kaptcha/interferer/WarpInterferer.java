@@ -1,10 +1,16 @@
 package com.mazepeng.kaptcha.interferer;
 
+import com.mazepeng.kaptcha.api.IColorizer;
 import com.mazepeng.kaptcha.api.IInterferer;
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.color.PaletteColorizer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
 
 import java.awt.*;
 import java.awt.geom.Path2D;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Objects;
 
 /**
  * 扭曲干扰器 (修正版)
@@ -12,8 +18,12 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public class WarpInterferer implements IInterferer {
 
+    // 默认调色板使用固定种子生成，所有实例共享，保证同一个种子渲染出的验证码可以复现
+    private static final IColorizer DEFAULT_COLORS = PaletteColorizer.dark(256, new SeededRandomSource(0x57415250L));
+
     private final int lineCount;
     private final float strokeWidth;
+    private final IColorizer colorizer;
 
     /**
      * 默认构造函数，画3条线
@@ -25,21 +35,45 @@ public class WarpInterferer implements IInterferer {
     /**
      * 构造函数
      * @param lineCount   要画的扭曲线条数量
-     * @param strokeWidth 线条粗细
+     * @param strokeWidth 线条粗细（以 3 倍超采样画布的像素为单位，其他档位按比例换算）
      */
     public WarpInterferer(int lineCount, float strokeWidth) {
+        this(lineCount, strokeWidth, DEFAULT_COLORS);
+    }
+
+    /**
+     * 构造函数
+     * @param lineCount   要画的扭曲线条数量
+     * @param strokeWidth 线条粗细
+     * @param colorizer   线条颜色，不能为 null，默认使用随机深色调色板
+     */
+    public WarpInterferer(int lineCount, float strokeWidth, IColorizer colorizer) {
         this.lineCount = lineCount;
         this.strokeWidth = strokeWidth;
+        this.colorizer = Objects.requireNonNull(colorizer);
     }
 
     @Override
     public void draw(Graphics2D g, int width, int height) {
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        g.setStroke(new BasicStroke(this.strokeWidth));
+        draw(new RenderContext(g, width, height, RenderContext.DEFAULT_SCALE));
+    }
+
+    @Override
+    public void draw(RenderContext context) {
+        Graphics2D g = context.getGraphics();
+        int width = context.getWidth();
+        int height = context.getHeight();
+        IRandomSource random = context.getRandom();
+        Rasterizer rasterizer = context.getRasterizer();
+        if (rasterizer != null) {
+            drawRasterized(rasterizer, width, height, random, context.scaled(this.strokeWidth));
+            return;
+        }
+        g.setStroke(new BasicStroke(context.scaled(this.strokeWidth)));
 
         for (int i = 0; i < this.lineCount; i++) {
             // 设置随机颜色
-            g.setColor(new Color(random.nextInt(150), random.nextInt(150), random.nextInt(150)));
+            g.setColor(colorizer.nextColor(random));
 
             // 定义波浪线的参数
             double amplitude = random.nextDouble() * (height / 4.0) + (height / 8.0); // 振幅
@@ -63,4 +97,23 @@ public class WarpInterferer implements IInterferer {
             g.draw(path);
         }
     }
+
+    /**
+     * 软件渲染后端：同样的波浪线以折线形式直接光栅化到像素数组中
+     */
+    private void drawRasterized(Rasterizer rasterizer, int width, int height, IRandomSource random, float lineWidth) {
+        double[] xs = new double[width];
+        double[] ys = new double[width];
+        for (int i = 0; i < this.lineCount; i++) {
+            int argb = colorizer.nextRgb(random);
+            double amplitude = random.nextDouble() * (height / 4.0) + (height / 8.0);
+            double period = random.nextDouble() * (width / 2.0) + (width / 4.0);
+            double phase = random.nextDouble() * Math.PI * 2;
+            for (int x = 0; x < width; x++) {
+                xs[x] = x;
+                ys[x] = height / 2.0 + Math.sin((x / period) * 2 * Math.PI + phase) * amplitude;
+            }
+            rasterizer.drawPolyline(xs, ys, width, lineWidth, argb);
+        }
+    }
 }
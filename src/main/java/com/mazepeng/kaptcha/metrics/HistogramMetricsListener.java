@@ -0,0 +1,113 @@
+package com.mazepeng.kaptcha.metrics;
+
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.RenderStage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于直方图的指标监听器
+ * 为每个渲染阶段、整张图片的渲染耗时以及 PNG 字节数各维护一个无锁直方图，并按阶段统计失败次数，
+ * 可以由监控系统定期抓取。
+ */
+public class HistogramMetricsListener implements IMetricsListener {
+
+    private static final RenderStage[] STAGES = RenderStage.values();
+
+    private final Histogram[] stages = new Histogram[STAGES.length];
+    private final LongAdder[] failures = new LongAdder[STAGES.length];
+    private final Histogram rendered = new Histogram();
+    private final Histogram encodedBytes = new Histogram();
+
+    public HistogramMetricsListener() {
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i] = new Histogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onStage(RenderStage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onRendered(long nanos) {
+        rendered.record(nanos);
+    }
+
+    @Override
+    public void onEncoded(int bytes) {
+        encodedBytes.record(bytes);
+    }
+
+    @Override
+    public void onFailure(RenderStage stage, Throwable error) {
+        failures[stage.ordinal()].increment();
+    }
+
+    /**
+     * @return 某个阶段的耗时直方图（纳秒）
+     */
+    public Histogram getStageHistogram(RenderStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @return 整张图片（不含编码）的渲染耗时直方图（纳秒）
+     */
+    public Histogram getRenderHistogram() {
+        return rendered;
+    }
+
+    /**
+     * @return PNG 字节数直方图
+     */
+    public Histogram getEncodedBytesHistogram() {
+        return encodedBytes;
+    }
+
+    /**
+     * @return 某个阶段的失败次数
+     */
+    public long getFailureCount(RenderStage stage) {
+        return failures[stage.ordinal()].sum();
+    }
+
+    /**
+     * @return 按阶段排列的耗时直方图，便于遍历输出
+     */
+    public Map<RenderStage, Histogram> getStageHistograms() {
+        Map<RenderStage, Histogram> map = new EnumMap<>(RenderStage.class);
+        for (RenderStage stage : STAGES) {
+            map.put(stage, stages[stage.ordinal()]);
+        }
+        return map;
+    }
+
+    /**
+     * 清空所有直方图和计数器
+     */
+    public void reset() {
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i].reset();
+            failures[i].reset();
+        }
+        rendered.reset();
+        encodedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (RenderStage stage : STAGES) {
+            sb.append(stage).append(": ").append(stages[stage.ordinal()])
+                    .append(" failures=").append(failures[stage.ordinal()].sum()).append('\n');
+        }
+        sb.append("RENDER: ").append(rendered).append('\n');
+        sb.append("BYTES: ").append(encodedBytes);
+        return sb.toString();
+    }
+}
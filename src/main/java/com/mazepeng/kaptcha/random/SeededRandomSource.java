@@ -0,0 +1,80 @@
+package com.mazepeng.kaptcha.random;
+
+import com.mazepeng.kaptcha.api.IRandomSource;
+
+/**
+ * 固定种子的随机数来源（xoshiro256**）
+ * <p>
+ * 同一个种子总是产生同一个序列，用于复现某一张验证码、按种子缓存渲染结果，或在基准测试中固定工作负载。
+ * 不是线程安全的，每次渲染使用自己的实例。
+ */
+public final class SeededRandomSource implements IRandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * @param seed 种子，任意值都可以（包括 0）
+     */
+    public SeededRandomSource(long seed) {
+        // 用 SplitMix64 把种子展开为 256 位状态
+        long x = seed;
+        s0 = mix64(x += GOLDEN_GAMMA);
+        s1 = mix64(x += GOLDEN_GAMMA);
+        s2 = mix64(x += GOLDEN_GAMMA);
+        s3 = mix64(x + GOLDEN_GAMMA);
+    }
+
+    /**
+     * 由基础种子和序号派生出互不相关的种子，第 index 张验证码使用 derive(seed, index)
+     */
+    public static long derive(long seed, long index) {
+        return mix64(seed + index * GOLDEN_GAMMA);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be greater than 0.");
+        }
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        // 拒绝采样，去掉取模带来的偏差
+        int u = r;
+        while (u - (r = u % bound) + m < 0) {
+            u = (int) (nextLong() >>> 33);
+        }
+        return r;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,36 @@
+package com.mazepeng.kaptcha.random;
+
+import com.mazepeng.kaptcha.api.IRandomSource;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 默认的随机数来源，直接使用线程本地的 ThreadLocalRandom（SplitMix64）
+ * 没有锁，也不分配对象，可以在任意线程上共享同一个实例。结果不可复现。
+ */
+public final class ThreadLocalRandomSource implements IRandomSource {
+
+    private static final ThreadLocalRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+    private ThreadLocalRandomSource() {
+    }
+
+    public static ThreadLocalRandomSource getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+}
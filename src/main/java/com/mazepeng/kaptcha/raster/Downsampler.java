@@ -0,0 +1,74 @@
+package com.mazepeng.kaptcha.raster;
+
+/**
+ * 整数倍缩小
+ * <p>
+ * 超采样画布与输出图片的尺寸正好是整数倍，输出的每个像素就是画布上对应 N x N 像素块的平均值（盒式滤波）。
+ * 直接在两个 int[] 像素数组之间计算，不经过 Java2D 的缩放管线：
+ * - 每个像素块内的各通道求和后用定点倒数相乘代替除法。
+ * - 半透明的像素先按 alpha 预乘，结果等同于把画布以 SrcOver 方式画到黑色的不透明图片上，与原来 drawImage 的语义一致。
+ * 盒式滤波对块内每个子像素的权重相同，正是超采样抗锯齿需要的平均；双三次插值在整数倍缩小时只采样每块附近的
+ * 4 x 4 个像素，反而会丢掉一部分子像素。
+ */
+public final class Downsampler {
+
+    // 定点倒数的小数位数，块内通道和最大为 255 * 16，乘积不会超出 int
+    private static final int SHIFT = 16;
+    private static final int MAX_FACTOR = 4;
+
+    private Downsampler() {
+    }
+
+    /**
+     * 把 ARGB（非预乘）画布按 factor 倍缩小到不透明的 RGB 像素数组中，输出像素的高 8 位为 0
+     * @param src         画布像素
+     * @param srcOffset   画布左上角像素在数组中的下标
+     * @param srcScanline 画布每行的像素跨度
+     * @param dst         输出像素
+     * @param dstOffset   输出左上角像素在数组中的下标
+     * @param dstScanline 输出每行的像素跨度
+     * @param width       输出宽度
+     * @param height      输出高度
+     * @param factor      缩小倍数，1 到 4
+     */
+    public static void box(int[] src, int srcOffset, int srcScanline,
+                           int[] dst, int dstOffset, int dstScanline,
+                           int width, int height, int factor) {
+        if (factor <= 0 || factor > MAX_FACTOR) {
+            throw new IllegalArgumentException("Factor must be between 1 and " + MAX_FACTOR + ".");
+        }
+        int area = factor * factor;
+        // 向上取整的倒数，块内所有像素相同时结果精确
+        int reciprocal = ((1 << SHIFT) + area - 1) / area;
+        int round = 1 << (SHIFT - 1);
+        for (int y = 0; y < height; y++) {
+            int srcRow = srcOffset + y * factor * srcScanline;
+            int dstRow = dstOffset + y * dstScanline;
+            for (int x = 0; x < width; x++) {
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                int block = srcRow + x * factor;
+                for (int ky = 0; ky < factor; ky++) {
+                    int s = block + ky * srcScanline;
+                    for (int kx = 0; kx < factor; kx++) {
+                        int p = src[s + kx];
+                        int a = p >>> 24;
+                        if (a == 0xFF) {
+                            r += (p >> 16) & 0xFF;
+                            g += (p >> 8) & 0xFF;
+                            b += p & 0xFF;
+                        } else if (a != 0) {
+                            r += ((p >> 16) & 0xFF) * a / 255;
+                            g += ((p >> 8) & 0xFF) * a / 255;
+                            b += (p & 0xFF) * a / 255;
+                        }
+                    }
+                }
+                dst[dstRow + x] = (((r * reciprocal + round) >>> SHIFT) << 16)
+                        | (((g * reciprocal + round) >>> SHIFT) << 8)
+                        | ((b * reciprocal + round) >>> SHIFT);
+            }
+        }
+    }
+}
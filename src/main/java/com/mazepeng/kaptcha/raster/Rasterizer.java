@@ -0,0 +1,385 @@
+package com.mazepeng.kaptcha.raster;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * 软件光栅化器
+ * <p>
+ * 不经过 Java2D 的渲染管线，直接把抗锯齿的直线、三次贝塞尔曲线、折线和任意轮廓（如字形）画进 ARGB 像素数组：
+ * - 每个形状先把各条边按带符号面积累加到覆盖率缓冲区，再逐行前缀求和得到每个像素的覆盖率（非零环绕，截断到 1）。
+ * - 线条按线宽展开为方向一致的四边形，两端各延长半个线宽（方形线帽，与 BasicStroke 的默认值一致），
+ *   相邻线段的重叠部分覆盖率截断，折线的连接处没有缝隙。
+ * - 每一行只扫描形状在该行实际覆盖的区间（斜线不会扫描整个包围盒），合成时顺便把缓冲区清零，可以反复使用。
+ * 光栅化器不是线程安全的，每个渲染器持有自己的实例，线程之间没有共享状态，渲染吞吐随核数线性增长。
+ */
+public final class Rasterizer {
+
+    // 覆盖率低于该值的像素不做混合
+    private static final float MIN_COVERAGE = 1f / 512;
+    // 曲线展平时每段的目标长度（像素）
+    private static final double CURVE_SEGMENT_LENGTH = 4.0;
+    private static final int MAX_CURVE_SEGMENTS = 256;
+    // 轮廓展平的容差（像素）
+    private static final double FLATNESS = 0.25;
+
+    private final int[] pixels;
+    private final int offset;
+    private final int scanline;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final float[] coverage;
+    // 当前形状在每一行覆盖的区间 [rowMinX, rowMaxX)，以及覆盖的行区间 [minY, maxY)
+    private final int[] rowMinX;
+    private final int[] rowMaxX;
+    private int minY;
+    private int maxY;
+
+    /**
+     * @param pixels   ARGB（非预乘）像素数组
+     * @param offset   画布左上角像素在数组中的下标
+     * @param scanline 每行的像素跨度
+     * @param width    画布宽度
+     * @param height   画布高度
+     */
+    public Rasterizer(int[] pixels, int offset, int scanline, int width, int height) {
+        this(pixels, offset, scanline, width, height, new float[(width + 2) * height], new int[height], new int[height]);
+    }
+
+    private Rasterizer(int[] pixels, int offset, int scanline, int width, int height,
+                       float[] coverage, int[] rowMinX, int[] rowMaxX) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Canvas size must be greater than 0.");
+        }
+        this.pixels = pixels;
+        this.offset = offset;
+        this.scanline = scanline;
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.coverage = coverage;
+        this.rowMinX = rowMinX;
+        this.rowMaxX = rowMaxX;
+        Arrays.fill(rowMinX, Integer.MAX_VALUE);
+        Arrays.fill(rowMaxX, Integer.MIN_VALUE);
+        minY = Integer.MAX_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * 返回绘制到同一个像素数组另一位置（如拼图画布的另一个图块）的光栅化器，与当前实例共用覆盖率缓冲区，
+     * 两者不能交替使用
+     * @param offset 新位置左上角像素在数组中的下标
+     */
+    public Rasterizer withOffset(int offset) {
+        return offset == this.offset ? this
+                : new Rasterizer(pixels, offset, scanline, width, height, coverage, rowMinX, rowMaxX);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 填充矩形，不做抗锯齿。不透明的颜色直接写入像素
+     */
+    public void fillRect(int x, int y, int w, int h, int argb) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(width, x + w);
+        int y1 = Math.min(height, y + h);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int colorAlpha = argb >>> 24;
+        for (int row = y0; row < y1; row++) {
+            int dst = offset + row * scanline;
+            if (colorAlpha == 0xFF) {
+                Arrays.fill(pixels, dst + x0, dst + x1, argb);
+            } else {
+                for (int col = x0; col < x1; col++) {
+                    blend(dst + col, argb, colorAlpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * 画一条抗锯齿直线
+     * @param lineWidth 线宽（像素）
+     */
+    public void drawLine(double x1, double y1, double x2, double y2, float lineWidth, int argb) {
+        addSegment(x1, y1, x2, y2, lineWidth / 2.0);
+        composite(argb);
+    }
+
+    /**
+     * 画一条抗锯齿折线
+     * @param xs        各点的 x 坐标
+     * @param ys        各点的 y 坐标
+     * @param count     点的数量
+     * @param lineWidth 线宽（像素）
+     */
+    public void drawPolyline(double[] xs, double[] ys, int count, float lineWidth, int argb) {
+        double half = lineWidth / 2.0;
+        for (int i = 1; i < count; i++) {
+            addSegment(xs[i - 1], ys[i - 1], xs[i], ys[i], half);
+        }
+        composite(argb);
+    }
+
+    /**
+     * 画一条抗锯齿的三次贝塞尔曲线，按控制多边形的长度展平为折线
+     */
+    public void drawCubic(double x1, double y1, double cx1, double cy1, double cx2, double cy2,
+                          double x2, double y2, float lineWidth, int argb) {
+        double length = Math.hypot(cx1 - x1, cy1 - y1) + Math.hypot(cx2 - cx1, cy2 - cy1) + Math.hypot(x2 - cx2, y2 - cy2);
+        int segments = (int) Math.max(1, Math.min(MAX_CURVE_SEGMENTS, Math.ceil(length / CURVE_SEGMENT_LENGTH)));
+        double half = lineWidth / 2.0;
+        double px = x1;
+        double py = y1;
+        for (int i = 1; i <= segments; i++) {
+            double t = (double) i / segments;
+            double u = 1 - t;
+            double a = u * u * u;
+            double b = 3 * u * u * t;
+            double c = 3 * u * t * t;
+            double d = t * t * t;
+            double x = a * x1 + b * cx1 + c * cx2 + d * x2;
+            double y = a * y1 + b * cy1 + c * cy2 + d * y2;
+            addSegment(px, py, x, y, half);
+            px = x;
+            py = y;
+        }
+        composite(argb);
+    }
+
+    /**
+     * 按非零环绕规则填充任意轮廓（如 GlyphVector 的字形轮廓），曲线按 0.25 像素的容差展平
+     */
+    public void fill(Shape shape, int argb) {
+        PathIterator it = shape.getPathIterator(null, FLATNESS);
+        double[] p = new double[6];
+        double startX = 0;
+        double startY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        while (!it.isDone()) {
+            switch (it.currentSegment(p)) {
+                case PathIterator.SEG_MOVETO:
+                    edge(lastX, lastY, startX, startY);
+                    startX = lastX = p[0];
+                    startY = lastY = p[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    edge(lastX, lastY, p[0], p[1]);
+                    lastX = p[0];
+                    lastY = p[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    edge(lastX, lastY, startX, startY);
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+                default:
+                    // 展平后的路径只包含直线段
+                    break;
+            }
+            it.next();
+        }
+        edge(lastX, lastY, startX, startY);
+        composite(argb);
+    }
+
+    /**
+     * 把一条线段按半线宽展开为四边形，四条边的环绕方向始终一致，重叠部分不会相互抵消
+     */
+    private void addSegment(double x1, double y1, double x2, double y2, double half) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double length = Math.hypot(dx, dy);
+        double ux;
+        double uy;
+        if (length == 0) {
+            ux = 1;
+            uy = 0;
+        } else {
+            ux = dx / length;
+            uy = dy / length;
+        }
+        double nx = -uy * half;
+        double ny = ux * half;
+        double ax = x1 - ux * half;
+        double ay = y1 - uy * half;
+        double bx = x2 + ux * half;
+        double by = y2 + uy * half;
+        edge(ax + nx, ay + ny, bx + nx, by + ny);
+        edge(bx + nx, by + ny, bx - nx, by - ny);
+        edge(bx - nx, by - ny, ax - nx, ay - ny);
+        edge(ax - nx, ay - ny, ax + nx, ay + ny);
+    }
+
+    /**
+     * 把一条边的带符号面积累加到覆盖率缓冲区。画布上下方的部分直接裁掉，左右两侧的部分压到边界上，
+     * 对画布内像素的覆盖率没有影响
+     */
+    private void edge(double x0, double y0, double x1, double y1) {
+        if (y0 == y1) {
+            return;
+        }
+        double dir;
+        if (y0 < y1) {
+            dir = 1;
+        } else {
+            dir = -1;
+            double t = x0;
+            x0 = x1;
+            x1 = t;
+            t = y0;
+            y0 = y1;
+            y1 = t;
+        }
+        if (y1 <= 0 || y0 >= height) {
+            return;
+        }
+        double dxdy = (x1 - x0) / (y1 - y0);
+        double x = x0;
+        if (y0 < 0) {
+            x -= y0 * dxdy;
+            y0 = 0;
+        }
+        if (y1 > height) {
+            y1 = height;
+        }
+        int yStart = (int) y0;
+        int yEnd = (int) Math.ceil(y1);
+        minY = Math.min(minY, yStart);
+        maxY = Math.max(maxY, yEnd);
+
+        for (int y = yStart; y < yEnd; y++) {
+            double dy = Math.min(y + 1, y1) - Math.max(y, y0);
+            double xNext = x + dxdy * dy;
+            double d = dy * dir;
+            double xa = clampX(Math.min(x, xNext));
+            double xb = clampX(Math.max(x, xNext));
+            int row = y * stride;
+            double xaFloor = Math.floor(xa);
+            int xai = (int) xaFloor;
+            double xbCeil = Math.ceil(xb);
+            int xbi = (int) xbCeil;
+            if (xai < rowMinX[y]) {
+                rowMinX[y] = xai;
+            }
+            if (xbi <= xai + 1) {
+                double xmf = 0.5 * (xa + xb) - xaFloor;
+                coverage[row + xai] += (float) (d - d * xmf);
+                coverage[row + xai + 1] += (float) (d * xmf);
+                if (xai + 2 > rowMaxX[y]) {
+                    rowMaxX[y] = xai + 2;
+                }
+            } else {
+                double s = 1 / (xb - xa);
+                double xaf = xa - xaFloor;
+                double a0 = 0.5 * s * (1 - xaf) * (1 - xaf);
+                double xbf = xb - xbCeil + 1;
+                double am = 0.5 * s * xbf * xbf;
+                coverage[row + xai] += (float) (d * a0);
+                if (xbi == xai + 2) {
+                    coverage[row + xai + 1] += (float) (d * (1 - a0 - am));
+                } else {
+                    double a1 = s * (1.5 - xaf);
+                    coverage[row + xai + 1] += (float) (d * (a1 - a0));
+                    for (int xi = xai + 2; xi < xbi - 1; xi++) {
+                        coverage[row + xi] += (float) (d * s);
+                    }
+                    double a2 = a1 + (xbi - xai - 3) * s;
+                    coverage[row + xbi - 1] += (float) (d * (1 - a2 - am));
+                }
+                coverage[row + xbi] += (float) (d * am);
+                if (xbi + 1 > rowMaxX[y]) {
+                    rowMaxX[y] = xbi + 1;
+                }
+            }
+            x = xNext;
+        }
+    }
+
+    private double clampX(double x) {
+        return x < 0 ? 0 : (x > width ? width : x);
+    }
+
+    /**
+     * 逐行前缀求和得到覆盖率，按覆盖率把颜色混合到像素中，并清空缓冲区
+     */
+    private void composite(int argb) {
+        int colorAlpha = argb >>> 24;
+        for (int y = minY; y < maxY; y++) {
+            int row = y * stride;
+            int dst = offset + y * scanline;
+            int rowEnd = rowMaxX[y];
+            float acc = 0;
+            for (int x = rowMinX[y]; x < rowEnd; x++) {
+                acc += coverage[row + x];
+                coverage[row + x] = 0;
+                if (x >= width) {
+                    continue;
+                }
+                float c = Math.abs(acc);
+                if (c < MIN_COVERAGE || colorAlpha == 0) {
+                    continue;
+                }
+                int a = c >= 1 ? colorAlpha : (int) (c * colorAlpha + 0.5f);
+                blend(dst + x, argb, a);
+            }
+            rowMinX[y] = Integer.MAX_VALUE;
+            rowMaxX[y] = Integer.MIN_VALUE;
+        }
+        minY = Integer.MAX_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    private void blend(int index, int argb, int a) {
+        if (a != 0) {
+            pixels[index] = srcOver(pixels[index], argb, a);
+        }
+    }
+
+    /**
+     * 以 SrcOver 方式把颜色按 alpha 混合到非预乘 ARGB 像素上
+     * @param dst  目标像素
+     * @param argb 颜色，只使用 RGB 分量
+     * @param a    混合使用的 alpha（0 - 255）
+     * @return 混合后的像素
+     */
+    public static int srcOver(int dst, int argb, int a) {
+        if (a == 0) {
+            return dst;
+        }
+        int sr = (argb >> 16) & 0xFF;
+        int sg = (argb >> 8) & 0xFF;
+        int sb = argb & 0xFF;
+        if (a == 0xFF) {
+            return 0xFF000000 | (sr << 16) | (sg << 8) | sb;
+        }
+        int da = dst >>> 24;
+        if (da == 0xFF) {
+            int ia = 255 - a;
+            int r = (sr * a + ((dst >> 16) & 0xFF) * ia) / 255;
+            int g = (sg * a + ((dst >> 8) & 0xFF) * ia) / 255;
+            int b = (sb * a + (dst & 0xFF) * ia) / 255;
+            return 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        int dw = da * (255 - a) / 255;
+        int oa = a + dw;
+        int r = (sr * a + ((dst >> 16) & 0xFF) * dw) / oa;
+        int g = (sg * a + ((dst >> 8) & 0xFF) * dw) / oa;
+        int b = (sb * a + (dst & 0xFF) * dw) / oa;
+        return (oa << 24) | (r << 16) | (g << 8) | b;
+    }
+}
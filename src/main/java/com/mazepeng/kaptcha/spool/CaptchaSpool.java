@@ -0,0 +1,453 @@
+package com.mazepeng.kaptcha.spool;
+
+import com.mazepeng.kaptcha.Captcha;
+import com.mazepeng.kaptcha.CaptchaProducer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 跨 JVM 共享的预编码验证码文件
+ * <p>
+ * 一个文件中保存大量已经编码好的 PNG 验证码和答案的加盐摘要，由后台或离线的 Writer 使用 CaptchaProducer 填充，
+ * 同一台机器上的多个进程通过内存映射读取：
+ * - 文件头中有一个领取游标，进程在文件锁的保护下按批原子地推进游标，每个验证码只会被领取一次。
+ * - 进程把领到的一批在本地逐个分发，文件锁的开销被分摊到整批上。
+ * - 图片数据直接引用映射的内存，输出时不做拷贝，请求路径上没有任何渲染和编码。
+ * 每个文件只填充一次。补充时 create 先在同一目录下的临时文件中写好文件头，再原子地重命名覆盖旧文件，
+ * 旧文件不会被截断，仍在映射旧文件的进程不受影响。读取方领完当前文件后会检查路径上的文件是否已经换成新的，
+ * 是则重新映射并继续领取，不会领到已经分发过的验证码。新文件沿用旧文件的盐，之前保存的答案摘要仍然可以校验。
+ * 进程关闭时本地尚未分发的验证码会被浪费。
+ */
+public final class CaptchaSpool implements AutoCloseable {
+
+    private static final byte[] MAGIC = "KAPTSPL1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SLOT_COUNT_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 12;
+    private static final int SALT_OFFSET = 16;
+    private static final int SALT_LENGTH = 16;
+    private static final int CURSOR_OFFSET = 32;
+    private static final int PUBLISHED_OFFSET = 40;
+    // 每次 create 随机生成，用于识别路径上的文件是否已经被替换
+    private static final int FILE_ID_OFFSET = 48;
+    private static final int HEADER_LENGTH = 64;
+    // 每个槽位：PNG 长度(4) + 答案摘要(32) + PNG 数据
+    private static final int HASH_LENGTH = 32;
+    private static final int SLOT_OVERHEAD = 4 + HASH_LENGTH;
+
+    private static final int DEFAULT_CLAIM_BATCH = 16;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    });
+
+    // FileLock 属于整个 JVM，同一个 JVM 内重叠地获取会抛出 OverlappingFileLockException，
+    // 进程内所有读取方和 Writer 对游标区域加文件锁之前都先获取这个锁
+    private static final ReentrantLock FILE_LOCK_GUARD = new ReentrantLock();
+
+    private final Path path;
+    private final int claimBatch;
+    private volatile Mapping current;
+
+    // 文件锁只能在进程间互斥，同一进程内的线程还需要本地锁
+    private final ReentrantLock claimLock = new ReentrantLock();
+    private long localNext;
+    private long localEnd;
+
+    private CaptchaSpool(Path path, Mapping mapping, int claimBatch) {
+        this.path = path;
+        this.current = mapping;
+        this.claimBatch = claimBatch;
+    }
+
+    /**
+     * 打开一个已有的共享验证码文件
+     */
+    public static CaptchaSpool open(Path path) throws IOException {
+        return open(path, DEFAULT_CLAIM_BATCH);
+    }
+
+    /**
+     * 打开一个已有的共享验证码文件
+     * @param claimBatch 每次从共享游标领取的数量，越大文件锁越少，进程退出时可能浪费的也越多
+     */
+    public static CaptchaSpool open(Path path, int claimBatch) throws IOException {
+        if (claimBatch <= 0) {
+            throw new IllegalArgumentException("Claim batch must be greater than 0.");
+        }
+        return new CaptchaSpool(path, Mapping.open(path), claimBatch);
+    }
+
+    /**
+     * 创建一个共享验证码文件，返回用于填充的 Writer。
+     * 路径上已有文件时原子地替换它：已经打开旧文件的读取方领完旧文件后自动切换到新文件。
+     * @param path          文件路径
+     * @param capacity      验证码数量
+     * @param maxImageBytes 单个 PNG 的最大字节数，超过的验证码无法写入
+     */
+    public static Writer create(Path path, int capacity, int maxImageBytes) throws IOException {
+        if (capacity <= 0 || maxImageBytes <= 0) {
+            throw new IllegalArgumentException("Capacity and max image bytes must be greater than 0.");
+        }
+        long size = HEADER_LENGTH + (long) capacity * stride(maxImageBytes);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Spool file must not exceed 2 GB.");
+        }
+        Path target = path.toAbsolutePath();
+        ByteBuffer existing = readHeader(target);
+        byte[] salt = new byte[SALT_LENGTH];
+        SecureRandom random = new SecureRandom();
+        if (existing != null) {
+            for (int i = 0; i < SALT_LENGTH; i++) {
+                salt[i] = existing.get(SALT_OFFSET + i);
+            }
+        } else {
+            random.nextBytes(salt);
+        }
+        // 不使用 Files.createTempFile，它创建的文件只有所有者可以读写，其他用户的进程无法打开
+        Path temp = target.resolveSibling(target.getFileName() + "." + Long.toHexString(random.nextLong()) + ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.put(MAGIC);
+            mapped.putInt(SLOT_COUNT_OFFSET, capacity);
+            mapped.putInt(SLOT_SIZE_OFFSET, maxImageBytes);
+            for (int i = 0; i < SALT_LENGTH; i++) {
+                mapped.put(SALT_OFFSET + i, salt[i]);
+            }
+            mapped.putLong(CURSOR_OFFSET, 0);
+            mapped.putLong(PUBLISHED_OFFSET, 0);
+            mapped.putLong(FILE_ID_OFFSET, random.nextLong());
+            // 文件头写好后才出现在目标路径上，读取方不会看到不完整的文件头
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new Writer(channel, mapped, capacity, maxImageBytes, salt);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 领取下一个验证码
+     * @return 领取到的验证码，当前文件已经领完且没有被替换时返回 null（调用方可以回退为实时渲染）
+     */
+    public SpooledCaptcha next() throws IOException {
+        Mapping mapping;
+        long index;
+        claimLock.lock();
+        try {
+            if (localNext == localEnd && !claimBlock() && !(remap() && claimBlock())) {
+                return null;
+            }
+            mapping = current;
+            index = localNext++;
+        } finally {
+            claimLock.unlock();
+        }
+
+        ByteBuffer readOnly = mapping.readOnly;
+        int offset = HEADER_LENGTH + (int) index * mapping.slotStride;
+        int length = readOnly.getInt(offset);
+        byte[] hash = new byte[HASH_LENGTH];
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            hash[i] = readOnly.get(offset + 4 + i);
+        }
+        ByteBuffer image = readOnly.duplicate();
+        // 通过 Buffer 调用，Java 8 上没有 ByteBuffer 的协变重写
+        ((Buffer) image).position(offset + SLOT_OVERHEAD);
+        ((Buffer) image).limit(offset + SLOT_OVERHEAD + length);
+        return new SpooledCaptcha(mapping.salt, image.slice(), hash);
+    }
+
+    /**
+     * 在文件锁的保护下从共享游标领取一批，只能领取已经发布的部分
+     */
+    private boolean claimBlock() throws IOException {
+        Mapping mapping = current;
+        FILE_LOCK_GUARD.lock();
+        try (FileLock ignored = mapping.channel.lock(CURSOR_OFFSET, 8, false)) {
+            long cursor = mapping.mapped.getLong(CURSOR_OFFSET);
+            long end = Math.min(cursor + claimBatch, mapping.mapped.getLong(PUBLISHED_OFFSET));
+            if (end <= cursor) {
+                return false;
+            }
+            mapping.mapped.putLong(CURSOR_OFFSET, end);
+            localNext = cursor;
+            localEnd = end;
+            return true;
+        } finally {
+            FILE_LOCK_GUARD.unlock();
+        }
+    }
+
+    /**
+     * 路径上的文件已经被替换时映射新文件，旧文件的通道随之关闭（已经领取的验证码仍引用旧的映射）
+     * @return 是否切换到了新文件
+     */
+    private boolean remap() throws IOException {
+        Mapping old = current;
+        ByteBuffer header = readHeader(path);
+        if (header == null || header.getLong(FILE_ID_OFFSET) == old.fileId) {
+            return false;
+        }
+        current = Mapping.open(path);
+        localNext = 0;
+        localEnd = 0;
+        old.channel.close();
+        return true;
+    }
+
+    /**
+     * @return 所有进程都还没有领取的数量（不含本进程已领取但尚未分发的部分）
+     */
+    public int remaining() {
+        MappedByteBuffer mapped = current.mapped;
+        return (int) Math.max(0, mapped.getLong(PUBLISHED_OFFSET) - mapped.getLong(CURSOR_OFFSET));
+    }
+
+    /**
+     * @return 当前文件的总容量
+     */
+    public int capacity() {
+        return current.slotCount;
+    }
+
+    /**
+     * 以常量时间比较答案和之前保存的摘要（不区分大小写）
+     * @param answerHash SpooledCaptcha.getAnswerHash() 返回的摘要
+     * @param answer     用户输入的答案
+     */
+    public boolean matches(byte[] answerHash, String answer) {
+        return matches(current.salt, answerHash, answer);
+    }
+
+    /**
+     * 关闭文件通道。已经领取的验证码引用的映射内存仍然有效，直到被垃圾回收。
+     */
+    @Override
+    public void close() throws IOException {
+        current.channel.close();
+    }
+
+    static boolean matches(byte[] salt, byte[] answerHash, String answer) {
+        return answerHash != null && answer != null && MessageDigest.isEqual(answerHash, hash(salt, answer));
+    }
+
+    /**
+     * 读取路径上的文件头
+     * @return 文件头，文件不存在或不是共享验证码文件时返回 null
+     */
+    private static ByteBuffer readHeader(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (header.hasRemaining()) {
+            return null;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = header.get(i);
+        }
+        return Arrays.equals(magic, MAGIC) ? header : null;
+    }
+
+    private static byte[] hash(byte[] salt, String answer) {
+        MessageDigest digest = SHA256.get();
+        digest.update(salt);
+        digest.update(answer.toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    private static int stride(int maxImageBytes) {
+        // 按 8 字节对齐
+        return (SLOT_OVERHEAD + maxImageBytes + 7) & ~7;
+    }
+
+    /**
+     * 一个已映射的文件
+     */
+    private static final class Mapping {
+        final FileChannel channel;
+        final MappedByteBuffer mapped;
+        final ByteBuffer readOnly;
+        final int slotCount;
+        final int slotStride;
+        final byte[] salt;
+        final long fileId;
+
+        private Mapping(FileChannel channel) throws IOException {
+            this.channel = channel;
+            long size = channel.size();
+            if (size < HEADER_LENGTH) {
+                throw new IOException("Not a captcha spool file.");
+            }
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            byte[] magic = new byte[MAGIC.length];
+            mapped.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a captcha spool file.");
+            }
+            this.slotCount = mapped.getInt(SLOT_COUNT_OFFSET);
+            this.slotStride = stride(mapped.getInt(SLOT_SIZE_OFFSET));
+            if (HEADER_LENGTH + (long) slotCount * slotStride > size) {
+                throw new IOException("Captcha spool file is truncated.");
+            }
+            this.salt = new byte[SALT_LENGTH];
+            for (int i = 0; i < SALT_LENGTH; i++) {
+                salt[i] = mapped.get(SALT_OFFSET + i);
+            }
+            this.fileId = mapped.getLong(FILE_ID_OFFSET);
+            this.readOnly = mapped.asReadOnlyBuffer();
+        }
+
+        static Mapping open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Mapping(channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 填充共享验证码文件。Writer 不是线程安全的，一个文件同时只应有一个 Writer。
+     * 写入的数据通过文件头中的发布计数对读取方可见，读取方可以在填充过程中就开始领取。
+     * 发布计数在读取方领取时持有的同一个文件锁下更新，加锁和解锁保证了槽位数据先于计数对其他进程可见；
+     * append 每次都发布，fill 每批只发布一次。
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer mapped;
+        private final int capacity;
+        private final int maxImageBytes;
+        private final int slotStride;
+        private final byte[] salt;
+        private int size;
+
+        private Writer(FileChannel channel, MappedByteBuffer mapped, int capacity, int maxImageBytes, byte[] salt) {
+            this.channel = channel;
+            this.mapped = mapped;
+            this.capacity = capacity;
+            this.maxImageBytes = maxImageBytes;
+            this.slotStride = stride(maxImageBytes);
+            this.salt = salt;
+        }
+
+        /**
+         * 写入一个验证码
+         * @return 文件已满时返回 false
+         */
+        public boolean append(Captcha captcha) throws IOException {
+            if (!write(captcha)) {
+                return false;
+            }
+            publish();
+            return true;
+        }
+
+        /**
+         * 写入槽位但不发布
+         */
+        private boolean write(Captcha captcha) {
+            if (size == capacity) {
+                return false;
+            }
+            ByteBuffer png = captcha.toByteBuffer();
+            int length = png.remaining();
+            if (length > maxImageBytes) {
+                throw new IllegalArgumentException("Encoded captcha exceeds the spool slot size.");
+            }
+            int offset = HEADER_LENGTH + size * slotStride;
+            mapped.putInt(offset, length);
+            byte[] hash = hash(salt, captcha.getText());
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                mapped.put(offset + 4 + i, hash[i]);
+            }
+            // MappedByteBuffer.duplicate 和 ByteBuffer.position 的协变重写都不存在于 Java 8
+            ByteBuffer slot = ((ByteBuffer) mapped).duplicate();
+            ((Buffer) slot).position(offset + SLOT_OVERHEAD);
+            slot.put(png);
+            size++;
+            return true;
+        }
+
+        /**
+         * 在读取方领取时使用的文件锁下更新发布计数
+         */
+        private void publish() throws IOException {
+            FILE_LOCK_GUARD.lock();
+            try (FileLock ignored = channel.lock(CURSOR_OFFSET, 8, false)) {
+                mapped.putLong(PUBLISHED_OFFSET, size);
+            } finally {
+                FILE_LOCK_GUARD.unlock();
+            }
+        }
+
+        /**
+         * 使用生产者批量渲染，直到文件写满
+         * @return 本次写入的数量
+         */
+        public int fill(CaptchaProducer producer) throws IOException {
+            int written = 0;
+            while (size < capacity) {
+                List<Captcha> batch = producer.nextCaptchas(Math.min(64, capacity - size));
+                for (Captcha captcha : batch) {
+                    if (write(captcha)) {
+                        written++;
+                    }
+                }
+                publish();
+            }
+            return written;
+        }
+
+        /**
+         * @return 已经写入的数量
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 把映射的内容刷到磁盘并关闭文件
+         */
+        @Override
+        public void close() throws IOException {
+            mapped.force();
+            channel.close();
+        }
+    }
+}
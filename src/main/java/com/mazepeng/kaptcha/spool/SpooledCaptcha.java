@@ -0,0 +1,55 @@
+package com.mazepeng.kaptcha.spool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 从共享验证码文件中领取的一个验证码
+ * <p>
+ * 图片数据直接引用内存映射的文件内容，不做拷贝；答案只以加盐摘要的形式保存，需要通过 matches 校验。
+ */
+public final class SpooledCaptcha {
+
+    // 所在文件的盐
+    private final byte[] salt;
+    private final ByteBuffer image;
+    private final byte[] answerHash;
+
+    SpooledCaptcha(byte[] salt, ByteBuffer image, byte[] answerHash) {
+        this.salt = salt;
+        this.image = image;
+        this.answerHash = answerHash;
+    }
+
+    /**
+     * @return PNG 数据的只读视图（零拷贝），每次调用返回一个新的视图，位置从 0 开始
+     */
+    public ByteBuffer getImage() {
+        return image.duplicate();
+    }
+
+    /**
+     * 把 PNG 数据写入通道，对于 FileChannel / SocketChannel 可以直接从映射内存发送
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = image.duplicate();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return 答案的加盐摘要，可以保存在会话中，稍后通过 CaptchaSpool.matches 校验
+     */
+    public byte[] getAnswerHash() {
+        return answerHash.clone();
+    }
+
+    /**
+     * 以常量时间比较用户输入的答案（不区分大小写）
+     */
+    public boolean matches(String answer) {
+        return CaptchaSpool.matches(salt, answerHash, answer);
+    }
+}
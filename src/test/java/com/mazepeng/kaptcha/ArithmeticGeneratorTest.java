@@ -4,6 +4,7 @@ import com.mazepeng.kaptcha.api.CaptchaContent;
 import com.mazepeng.kaptcha.generator.ArithmeticGenerator;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.*;
 
 import javax.script.ScriptEngine;
@@ -55,4 +56,132 @@ class ArithmeticGeneratorTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("除法题目应能整除，且被除数不超过操作数上限的2倍")
+    void divisionShouldAlwaysBeExact() {
+        // Arrange
+        ArithmeticGenerator generator = new ArithmeticGenerator.Builder()
+                .maxOperand(30)
+                .weights(0, 0, 0, 1)
+                .build();
+
+        // Act & Assert
+        for (int i = 0; i < 2000; i++) {
+            CaptchaContent content = generator.generate();
+            String[] parts = content.getDrawText().replace(" = ?", "").split(" ÷ ");
+            int dividend = Integer.parseInt(parts[0]);
+            int divisor = Integer.parseInt(parts[1]);
+            assertThat(dividend).isLessThanOrEqualTo(60);
+            assertThat(divisor).isBetween(2, 30);
+            assertThat(dividend % divisor).isZero();
+            assertThat(content.getAnswer()).isEqualTo(String.valueOf(dividend / divisor));
+        }
+    }
+
+    @Test
+    @DisplayName("权重为0的运算符不应出现")
+    void zeroWeightOperatorsShouldNotAppear() {
+        // Arrange
+        ArithmeticGenerator generator = new ArithmeticGenerator.Builder()
+                .weights(0, 0, 1, 0)
+                .build();
+
+        // Act & Assert
+        for (int i = 0; i < 500; i++) {
+            assertThat(generator.generate().getDrawText()).contains(" × ").doesNotContain(" + ", " - ", " ÷ ");
+        }
+    }
+
+    @Test
+    @DisplayName("多步题目的答案应与按运算优先级计算的结果一致")
+    void multiStepAnswerShouldFollowOperatorPrecedence() {
+        // Arrange
+        ArithmeticGenerator generator = new ArithmeticGenerator.Builder()
+                .maxOperand(12)
+                .steps(3)
+                .build();
+        boolean sawParentheses = false;
+
+        // Act & Assert
+        for (int i = 0; i < 2000; i++) {
+            CaptchaContent content = generator.generate();
+            String expression = content.getDrawText();
+            assertThat(expression).endsWith(" = ?");
+            sawParentheses |= expression.startsWith("(");
+            int value = new Evaluator(expression.replace(" = ?", "")).expression();
+            assertThat(value).isGreaterThanOrEqualTo(0);
+            assertThat(content.getAnswer()).isEqualTo(String.valueOf(value));
+        }
+        assertThat(sawParentheses).isTrue();
+    }
+
+    @Test
+    @DisplayName("构建参数非法时应抛出异常")
+    void invalidBuilderArgumentsShouldBeRejected() {
+        // Arrange
+        ArithmeticGenerator.Builder builder = new ArithmeticGenerator.Builder();
+
+        // Act & Assert
+        assertThatThrownBy(() -> builder.weights(0, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("At least one weight must be greater than 0.");
+        assertThatThrownBy(() -> builder.steps(4))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Steps must be between 1 and 3.");
+        assertThatThrownBy(() -> new ArithmeticGenerator(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max operand must be at least 2.");
+    }
+
+    /**
+     * 按四则运算优先级计算题目表达式的小型递归下降求值器，整数除法必须整除
+     */
+    private static final class Evaluator {
+        private final String text;
+        private int pos;
+
+        Evaluator(String text) {
+            this.text = text.replace(" ", "");
+        }
+
+        int expression() {
+            int value = term();
+            while (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                char op = text.charAt(pos++);
+                int right = term();
+                value = op == '+' ? value + right : value - right;
+            }
+            return value;
+        }
+
+        private int term() {
+            int value = factor();
+            while (pos < text.length() && (text.charAt(pos) == '×' || text.charAt(pos) == '÷')) {
+                char op = text.charAt(pos++);
+                int right = factor();
+                if (op == '÷') {
+                    assertThat(value % right).isZero();
+                    value /= right;
+                } else {
+                    value *= right;
+                }
+            }
+            return value;
+        }
+
+        private int factor() {
+            if (text.charAt(pos) == '(') {
+                pos++;
+                int value = expression();
+                pos++;
+                return value;
+            }
+            int start = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            return Integer.parseInt(text.substring(start, pos));
+        }
+    }
+}
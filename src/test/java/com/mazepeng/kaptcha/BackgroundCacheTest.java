@@ -0,0 +1,77 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.interferer.LineInterferer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Color;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+class BackgroundCacheTest {
+
+    @Test
+    @DisplayName("启用背景缓存后应正常生成指定尺寸的验证码")
+    void producerWithBackgroundCacheShouldRenderCaptcha() {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .width(150)
+                .height(50)
+                .backgroundCache(4, Duration.ofMinutes(1))
+                .build();
+
+        // Act & Assert
+        for (int i = 0; i < 20; i++) {
+            Captcha captcha = producer.nextCaptcha();
+            assertThat(captcha.getText()).hasSize(4);
+            assertThat(captcha.getImage().getWidth()).isEqualTo(150);
+            assertThat(captcha.getImage().getHeight()).isEqualTo(50);
+        }
+        assertThat(producer.getBackgroundCache().getRenderedCount()).isBetween(1L, 4L);
+    }
+
+    @Test
+    @DisplayName("背景层应在刷新间隔之后重新渲染")
+    void layersShouldRefreshAfterInterval() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        long refresh = Duration.ofSeconds(10).toNanos();
+        BackgroundCache cache = new BackgroundCache(60, 30, RenderProfile.FAST, RenderBackend.JAVA2D, Color.WHITE,
+                new LineInterferer(3), null, 1, refresh, now::get);
+        int[] pixels = new int[60 * 30];
+        RenderContext context = new RenderContext(null, 60, 30, 1, pixels, 0, 60);
+
+        // Act
+        cache.drawTo(context);
+        cache.drawTo(context);
+        long beforeRefresh = cache.getRenderedCount();
+        now.addAndGet(refresh * 2);
+        cache.drawTo(context);
+        cache.drawTo(context);
+
+        // Assert
+        assertThat(beforeRefresh).isEqualTo(1);
+        assertThat(cache.getRenderedCount()).isEqualTo(2);
+        assertThat(pixels).contains(Color.WHITE.getRGB());
+    }
+
+    @Test
+    @DisplayName("固定种子渲染应绕过背景缓存并保持可复现")
+    void seededRenderShouldBypassCache() {
+        // Arrange
+        CaptchaProducer cached = new CaptchaProducer.Builder()
+                .backgroundCache(2, Duration.ofMinutes(1))
+                .build();
+        CaptchaProducer plain = new CaptchaProducer.Builder().build();
+
+        // Act
+        Captcha a = cached.nextCaptcha(99L);
+        Captcha b = plain.nextCaptcha(99L);
+
+        // Assert
+        assertThat(a.toBase64()).isEqualTo(b.toBase64());
+        assertThat(cached.getBackgroundCache().getRenderedCount()).isZero();
+    }
+}
@@ -0,0 +1,136 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.RenderStage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CaptchaPoolTest {
+
+    private static void awaitSize(CaptchaPool pool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("池在后台预先填充到高水位线，取用时计为命中")
+    void poolShouldPrefillAndCountHits() throws InterruptedException {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder().build();
+        try (CaptchaPool pool = new CaptchaPool.Builder(producer)
+                .capacity(8)
+                .lowWatermark(2)
+                .highWatermark(6)
+                .build()) {
+            awaitSize(pool, 6);
+
+            // Act
+            Captcha captcha = pool.nextCaptcha();
+
+            // Assert
+            assertThat(pool.size()).isLessThanOrEqualTo(6);
+            assertThat(captcha.getText()).hasSize(4);
+            assertThat(pool.getHitCount()).isEqualTo(1);
+            assertThat(pool.getMissCount()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("池为空时应回退为同步渲染，并计为未命中")
+    void emptyPoolShouldFallBackToSynchronousRendering() {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder().build();
+        CaptchaPool pool = new CaptchaPool.Builder(producer).capacity(1).build();
+        pool.close();
+        while (pool.size() > 0) {
+            pool.nextCaptcha();
+        }
+        long hits = pool.getHitCount();
+
+        // Act
+        Captcha captcha = pool.nextCaptcha();
+
+        // Assert
+        assertThat(captcha).isNotNull();
+        assertThat(pool.getHitCount()).isEqualTo(hits);
+        assertThat(pool.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("开启预编码后，取出的验证码应能直接输出PNG")
+    void preEncodedCaptchaShouldWritePng() throws InterruptedException, IOException {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder().build();
+        try (CaptchaPool pool = new CaptchaPool.Builder(producer)
+                .capacity(4)
+                .preEncode(true)
+                .build()) {
+            awaitSize(pool, 4);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+            // Act
+            pool.nextCaptcha().writeTo(baos);
+
+            // Assert
+            byte[] png = baos.toByteArray();
+            assertThat(png).startsWith((byte) 0x89, (byte) 'P', (byte) 'N', (byte) 'G');
+        }
+    }
+
+    @Test
+    @DisplayName("多个工作线程补充时不应渲染超过高水位线的数量，渲染出的验证码都应入池")
+    void concurrentWorkersShouldNotDropRenderedCaptchas() throws InterruptedException {
+        // Arrange
+        AtomicInteger rendered = new AtomicInteger();
+        IMetricsListener listener = new IMetricsListener() {
+            @Override
+            public void onStage(RenderStage stage, long nanos) {
+            }
+
+            @Override
+            public void onRendered(long nanos) {
+                rendered.incrementAndGet();
+            }
+        };
+        CaptchaProducer producer = new CaptchaProducer.Builder().metricsListener(listener).build();
+        try (CaptchaPool pool = new CaptchaPool.Builder(producer)
+                .capacity(16)
+                .lowWatermark(4)
+                .workers(4)
+                .build()) {
+            awaitSize(pool, 16);
+
+            // Act：取到低水位线以下，触发第二轮补充
+            int taken = 0;
+            while (pool.size() > 2) {
+                pool.nextCaptcha();
+                taken++;
+            }
+            awaitSize(pool, 16);
+            Thread.sleep(100);
+
+            // Assert
+            assertThat(pool.size()).isEqualTo(16);
+            assertThat(rendered.get()).isEqualTo(16 + taken);
+            assertThat(pool.getMissCount()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("水位线配置无效时应该抛出异常")
+    void shouldRejectInvalidWatermarks() {
+        CaptchaProducer producer = new CaptchaProducer.Builder().build();
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CaptchaPool.Builder(producer).capacity(4).highWatermark(5).build());
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CaptchaPool.Builder(producer).capacity(4).lowWatermark(3).highWatermark(3).build());
+    }
+}
@@ -1,17 +1,35 @@
 package com.mazepeng.kaptcha;
 
+import com.mazepeng.kaptcha.api.IInterferer;
 import com.mazepeng.kaptcha.font.RandomFontProvider;
 import com.mazepeng.kaptcha.generator.ArithmeticGenerator;
 import com.mazepeng.kaptcha.generator.CharGenerator;
 import com.mazepeng.kaptcha.interferer.BesselCurveInterferer;
+import com.mazepeng.kaptcha.interferer.CompositeInterferer;
+import com.mazepeng.kaptcha.interferer.LineInterferer;
+import com.mazepeng.kaptcha.interferer.NoiseInterferer;
+import com.mazepeng.kaptcha.interferer.WarpInterferer;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import static org.assertj.core.api.Assertions.*;
 
+import java.awt.AlphaComposite;
+import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 class CaptchaProducerTest {
 
@@ -83,6 +101,38 @@ class CaptchaProducerTest {
         assertThat(base64).startsWith("data:image/png;base64,");
     }
 
+    @Test
+    @DisplayName("各种输出方式应得到同一份PNG数据")
+    void allOutputsShouldShareTheSameEncodedPng() throws IOException {
+        // Arrange
+        Captcha captcha = new CaptchaProducer.Builder().build().nextCaptcha();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteArrayOutputStream channelTarget = new ByteArrayOutputStream();
+        ByteArrayOutputStream dataUri = new ByteArrayOutputStream();
+        StringBuilder appended = new StringBuilder();
+
+        // Act
+        captcha.writeTo(stream);
+        captcha.writeTo(Channels.newChannel(channelTarget));
+        captcha.writeDataUri(dataUri);
+        captcha.appendDataUri(appended);
+        ByteBuffer buffer = captcha.toByteBuffer();
+
+        // Assert
+        byte[] png = stream.toByteArray();
+        byte[] fromBuffer = new byte[buffer.remaining()];
+        buffer.get(fromBuffer);
+        String expectedUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+
+        assertThat(channelTarget.toByteArray()).isEqualTo(png);
+        assertThat(fromBuffer).isEqualTo(png);
+        assertThat(captcha.toBase64()).isEqualTo(Base64.getEncoder().encodeToString(png));
+        assertThat(captcha.toDataUri()).isEqualTo(expectedUri);
+        assertThat(new String(dataUri.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo(expectedUri);
+        assertThat(appended.toString()).isEqualTo(expectedUri);
+        assertThat(captcha.toByteBuffer().isReadOnly()).isTrue();
+    }
+
     @Test
     @DisplayName("interferer设置为null时应不绘制干扰")
     void shouldNotDrawInterferenceWhenInterfererIsNull() {
@@ -100,6 +150,130 @@ class CaptchaProducerTest {
         assertThatCode(producer::nextCaptcha).doesNotThrowAnyException();
     }
 
+    @ParameterizedTest
+    @EnumSource(RenderProfile.class)
+    @DisplayName("每种渲染档位生成的图像尺寸都应与配置一致")
+    void everyRenderProfileShouldProduceConfiguredDimensions(RenderProfile profile) {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .width(150)
+                .height(50)
+                .renderProfile(profile)
+                .interferer(new CompositeInterferer(new LineInterferer(5), new WarpInterferer(), new NoiseInterferer()))
+                .build();
+
+        // Act
+        BufferedImage image = producer.nextCaptcha().getImage();
+
+        // Assert
+        assertThat(image.getWidth()).isEqualTo(150);
+        assertThat(image.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("异步生成应在指定的执行器上完成渲染")
+    void nextCaptchaAsyncShouldRenderOnGivenExecutor() throws Exception {
+        // Arrange：在渲染线程上记录线程名。渲染很快时 future 可能在 thenApply 之前就已完成，回调会在调用线程上执行
+        AtomicReference<String> renderThread = new AtomicReference<>();
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .metricsListener((stage, nanos) -> renderThread.set(Thread.currentThread().getName()))
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "async-render"));
+        try {
+            // Act
+            Captcha captcha = producer.nextCaptchaAsync(executor).get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertThat(renderThread.get()).isEqualTo("async-render");
+            assertThat(captcha.getText()).hasSize(4);
+            assertThat(captcha.getImage().getWidth()).isEqualTo(120);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("批量生成应返回指定数量且互不相同的验证码")
+    void nextCaptchasShouldRenderRequestedCount() {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .renderProfile(RenderProfile.FAST)
+                .build();
+
+        // Act
+        List<Captcha> captchas = producer.nextCaptchas(37);
+
+        // Assert
+        assertThat(captchas).hasSize(37).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(captchas).allSatisfy(c -> {
+            assertThat(c.getImage().getWidth()).isEqualTo(120);
+            assertThat(c.getImage().getHeight()).isEqualTo(40);
+        });
+        assertThat(producer.nextCaptchas(0)).isEmpty();
+        assertThatIllegalArgumentException().isThrownBy(() -> producer.nextCaptchas(-1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RenderProfile.class)
+    @DisplayName("拼图批量渲染的结果应与逐张渲染逐字节相同")
+    void sheetRenderingShouldMatchSingleRendering(RenderProfile profile) {
+        // Arrange
+        CaptchaProducer.Builder builder = new CaptchaProducer.Builder()
+                .width(150)
+                .height(50)
+                .renderProfile(profile)
+                .interferer(new CompositeInterferer(new LineInterferer(5), new BesselCurveInterferer(2), new NoiseInterferer()))
+                .seed(11L);
+        CaptchaProducer batch = builder.build();
+        CaptchaProducer single = builder.build();
+
+        // Act
+        Captcha[] sheet = batch.renderSeries(21);
+
+        // Assert
+        assertThat(sheet).hasSize(21);
+        for (Captcha captcha : sheet) {
+            Captcha expected = single.nextCaptcha();
+            assertThat(captcha.getText()).isEqualTo(expected.getText());
+            assertThat(captcha.toBase64()).isEqualTo(expected.toBase64());
+        }
+    }
+
+    @Test
+    @DisplayName("复用的渲染器不应受上一次渲染中干扰器遗留的画笔状态影响")
+    void pooledRendererShouldMatchFreshRenderer() {
+        // Arrange：干扰器修改变换和合成方式后不恢复
+        IInterferer leaky = (g, width, height) -> {
+            g.setColor(Color.BLUE);
+            g.drawLine(0, 0, width, height);
+            g.rotate(0.3);
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+        };
+        CaptchaProducer pooled = new CaptchaProducer.Builder().interferer(leaky).glyphCache(null).rendererPool(1).build();
+        CaptchaProducer fresh = new CaptchaProducer.Builder().interferer(leaky).glyphCache(null).rendererPool(0).build();
+
+        // Act
+        pooled.nextCaptcha(1L);
+        Captcha reused = pooled.nextCaptcha(2L);
+        Captcha expected = fresh.nextCaptcha(2L);
+
+        // Assert
+        assertThat(reused.getText()).isEqualTo(expected.getText());
+        assertThat(reused.toBase64()).isEqualTo(expected.toBase64());
+    }
+
+    @Test
+    @DisplayName("渲染器池大小为负数时应抛出异常")
+    void negativeRendererPoolSizeShouldBeRejected() {
+        // Arrange
+        CaptchaProducer.Builder builder = new CaptchaProducer.Builder();
+
+        // Act & Assert
+        assertThatThrownBy(() -> builder.rendererPool(-1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Renderer pool size must not be negative.");
+    }
+
     private static void saveToFile(Captcha captcha, String filename) {
         try (FileOutputStream fos = new FileOutputStream(filename)) {
             captcha.writeTo(fos);
@@ -0,0 +1,186 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.spool.CaptchaSpool;
+import com.mazepeng.kaptcha.spool.SpooledCaptcha;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+class CaptchaSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CaptchaProducer producer = new CaptchaProducer.Builder()
+            .renderProfile(RenderProfile.FAST)
+            .build();
+
+    @Test
+    @DisplayName("多个读取方共同领取时，每个验证码只会被领取一次")
+    void readersShouldClaimEachCaptchaOnce() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("captchas.spool");
+        try (CaptchaSpool.Writer writer = CaptchaSpool.create(file, 40, 16 * 1024)) {
+            assertThat(writer.fill(producer)).isEqualTo(40);
+        }
+
+        List<ByteBuffer> images = new ArrayList<>();
+        try (CaptchaSpool first = CaptchaSpool.open(file, 8);
+             CaptchaSpool second = CaptchaSpool.open(file, 3)) {
+            // Act
+            SpooledCaptcha a;
+            SpooledCaptcha b;
+            do {
+                a = first.next();
+                b = second.next();
+                if (a != null) images.add(a.getImage());
+                if (b != null) images.add(b.getImage());
+            } while (a != null || b != null);
+
+            // Assert
+            assertThat(images).hasSize(40).doesNotHaveDuplicates();
+            assertThat(first.remaining()).isZero();
+            assertThat(images).allSatisfy(image -> {
+                assertThat(image.isReadOnly()).isTrue();
+                assertThat(image.get(1)).isEqualTo((byte) 'P');
+            });
+        }
+    }
+
+    @Test
+    @DisplayName("领取的验证码应能校验答案，摘要可以单独保存后校验")
+    void spooledCaptchaShouldMatchItsAnswer() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("answers.spool");
+        Captcha captcha = producer.nextCaptcha();
+        try (CaptchaSpool.Writer writer = CaptchaSpool.create(file, 2, 16 * 1024)) {
+            writer.append(captcha);
+        }
+
+        try (CaptchaSpool spool = CaptchaSpool.open(file)) {
+            // Act
+            SpooledCaptcha spooled = spool.next();
+
+            // Assert
+            assertThat(spooled.getImage()).isEqualTo(captcha.toByteBuffer());
+            assertThat(spooled.matches(captcha.getText().toLowerCase())).isTrue();
+            assertThat(spooled.matches("wrong")).isFalse();
+            assertThat(spool.matches(spooled.getAnswerHash(), captcha.getText())).isTrue();
+            assertThat(spool.next()).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("同一进程内边写入边领取时，每个已发布的验证码都应完整且只被领取一次")
+    void readerShouldClaimWhileWriterPublishes() throws Exception {
+        // Arrange：预先渲染好，写入线程只负责写文件和发布
+        Path file = tempDir.resolve("live.spool");
+        List<Captcha> captchas = producer.nextCaptchas(60);
+        List<ByteBuffer> images = new ArrayList<>();
+        try (CaptchaSpool.Writer writer = CaptchaSpool.create(file, 60, 16 * 1024);
+             CaptchaSpool spool = CaptchaSpool.open(file, 4)) {
+            Thread writing = new Thread(() -> {
+                try {
+                    for (Captcha captcha : captchas) {
+                        writer.append(captcha);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            // Act
+            writing.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (images.size() < 60 && System.nanoTime() < deadline) {
+                SpooledCaptcha spooled = spool.next();
+                if (spooled != null) {
+                    images.add(spooled.getImage());
+                }
+            }
+            writing.join();
+        }
+
+        // Assert
+        assertThat(images).hasSize(60).doesNotHaveDuplicates();
+        List<ByteBuffer> expected = new ArrayList<>();
+        for (Captcha captcha : captchas) {
+            expected.add(captcha.toByteBuffer());
+        }
+        assertThat(images).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("重新创建文件时应原子地替换，旧文件的读取方领完后切换到新文件，已领取的验证码不受影响")
+    void recreatedSpoolShouldReplaceFileAtomically() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("refill.spool");
+        List<Captcha> first = producer.nextCaptchas(5);
+        List<Captcha> second = producer.nextCaptchas(3);
+        try (CaptchaSpool.Writer writer = CaptchaSpool.create(file, 5, 16 * 1024)) {
+            for (Captcha captcha : first) {
+                writer.append(captcha);
+            }
+        }
+
+        try (CaptchaSpool spool = CaptchaSpool.open(file, 2)) {
+            List<SpooledCaptcha> old = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                old.add(spool.next());
+            }
+            assertThat(spool.next()).isNull();
+
+            // Act：旧文件仍被映射时重新创建
+            try (CaptchaSpool.Writer writer = CaptchaSpool.create(file, 3, 16 * 1024)) {
+                for (Captcha captcha : second) {
+                    writer.append(captcha);
+                }
+            }
+            List<ByteBuffer> refilled = new ArrayList<>();
+            SpooledCaptcha spooled;
+            while ((spooled = spool.next()) != null) {
+                refilled.add(spooled.getImage());
+            }
+
+            // Assert
+            List<ByteBuffer> expected = new ArrayList<>();
+            for (Captcha captcha : second) {
+                expected.add(captcha.toByteBuffer());
+            }
+            assertThat(refilled).containsExactlyElementsOf(expected);
+            assertThat(spool.capacity()).isEqualTo(3);
+            for (int i = 0; i < 5; i++) {
+                assertThat(old.get(i).getImage()).isEqualTo(first.get(i).toByteBuffer());
+                assertThat(old.get(i).matches(first.get(i).getText())).isTrue();
+                assertThat(spool.matches(old.get(i).getAnswerHash(), first.get(i).getText())).isTrue();
+            }
+            try (CaptchaSpool reopened = CaptchaSpool.open(file)) {
+                assertThat(reopened.next()).isNull();
+            }
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertThat(files).containsExactly(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("PNG超过槽位大小时应该抛出异常")
+    void oversizedCaptchaShouldBeRejected() throws IOException {
+        try (CaptchaSpool.Writer writer = CaptchaSpool.create(tempDir.resolve("small.spool"), 1, 16)) {
+            assertThatIllegalArgumentException()
+                    .isThrownBy(() -> writer.append(producer.nextCaptcha()))
+                    .withMessage("Encoded captcha exceeds the spool slot size.");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.mazepeng.kaptcha;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CaptchaStoreTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CaptchaStore.Builder builder() {
+        return new CaptchaStore.Builder(new CaptchaProducer.Builder().renderProfile(RenderProfile.FAST).build())
+                .clock(now::get);
+    }
+
+    @Test
+    @DisplayName("签发的验证码只能校验通过一次")
+    void issuedAnswerShouldVerifyOnlyOnce() {
+        // Arrange
+        CaptchaStore store = builder().build();
+        Captcha captcha = store.issue("session-1");
+
+        // Act
+        boolean first = store.verify("session-1", captcha.getText());
+        boolean second = store.verify("session-1", captcha.getText());
+
+        // Assert
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(store.size()).isZero();
+        assertThat(store.getPassedCount()).isEqualTo(1);
+        assertThat(store.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("答错一次后答案即失效，默认不区分大小写")
+    void wrongAnswerShouldConsumeEntry() {
+        // Arrange
+        CaptchaStore store = builder().build();
+        store.put("a", "AbCd", Duration.ofMinutes(1));
+        store.put("b", "AbCd", Duration.ofMinutes(1));
+
+        // Act & Assert
+        assertThat(store.verify("a", "wrong")).isFalse();
+        assertThat(store.verify("a", "AbCd")).isFalse();
+        assertThat(store.verify("b", "abcd")).isTrue();
+    }
+
+    @Test
+    @DisplayName("过期的答案应校验失败，并由时间轮清理")
+    void expiredEntriesShouldBeRejectedAndSwept() {
+        // Arrange
+        CaptchaStore store = builder().wheel(Duration.ofSeconds(1), 8).build();
+        store.put("short", "1234", Duration.ofSeconds(2));
+        store.put("long", "5678", Duration.ofSeconds(30));
+        store.put("other", "0000", Duration.ofSeconds(3));
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        boolean shortResult = store.verify("short", "1234");
+        store.purgeExpired();
+
+        // Assert
+        assertThat(shortResult).isFalse();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getExpiredCount()).isEqualTo(2);
+        assertThat(store.verify("long", "5678")).isTrue();
+    }
+
+    @Test
+    @DisplayName("达到容量上限时应淘汰最早过期的条目")
+    void fullStoreShouldEvictSoonestExpiring() {
+        // Arrange
+        CaptchaStore store = builder().maxEntries(3).concurrencyLevel(1).build();
+        store.put("soon", "1", Duration.ofSeconds(10));
+        store.put("later", "2", Duration.ofSeconds(60));
+        store.put("latest", "3", Duration.ofSeconds(120));
+
+        // Act
+        store.put("new", "4", Duration.ofSeconds(60));
+
+        // Assert
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.getEvictedCount()).isEqualTo(1);
+        assertThat(store.verify("soon", "1")).isFalse();
+        assertThat(store.verify("later", "2")).isTrue();
+        assertThat(store.verify("new", "4")).isTrue();
+    }
+
+    @Test
+    @DisplayName("配置无效时应该抛出异常")
+    void shouldRejectInvalidConfiguration() {
+        assertThatIllegalArgumentException().isThrownBy(() -> builder().maxEntries(0).build());
+        assertThatIllegalArgumentException().isThrownBy(() -> builder().ttl(Duration.ZERO).build())
+                .withMessage("TTL must be greater than 0.");
+    }
+}
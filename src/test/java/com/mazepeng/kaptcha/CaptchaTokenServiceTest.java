@@ -0,0 +1,138 @@
+package com.mazepeng.kaptcha;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CaptchaTokenServiceTest {
+
+    private static final byte[] SECRET_1 = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SECRET_2 = "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.US_ASCII);
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private CaptchaTokenService.Builder builder() {
+        return new CaptchaTokenService.Builder()
+                .key(1, SECRET_1)
+                .ttl(Duration.ofMinutes(2))
+                .expectedTokens(1000)
+                .clock(now::get);
+    }
+
+    @Test
+    @DisplayName("任意节点使用相同密钥都能校验令牌，且令牌只能使用一次")
+    void tokenShouldVerifyOnAnyNodeOnlyOnce() {
+        // Arrange
+        CaptchaTokenService nodeA = builder().build();
+        CaptchaTokenService nodeB = builder().build();
+        Captcha captcha = new CaptchaProducer.Builder().renderProfile(RenderProfile.FAST).build().nextCaptcha();
+        String token = nodeA.sign(captcha);
+
+        // Act
+        boolean first = nodeB.verify(token, captcha.getText().toLowerCase());
+        boolean replay = nodeB.verify(token, captcha.getText());
+
+        // Assert
+        assertThat(token).hasSize(72).doesNotContain(captcha.getText());
+        assertThat(first).isTrue();
+        assertThat(replay).isFalse();
+        assertThat(nodeB.getReplayedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("答案错误、令牌被篡改或过期时应校验失败")
+    void wrongAnswerTamperedOrExpiredTokenShouldFail() {
+        // Arrange
+        CaptchaTokenService service = builder().build();
+        String wrong = service.sign("ABCD");
+        String tampered = service.sign("ABCD");
+        char last = tampered.charAt(tampered.length() - 1);
+        tampered = tampered.substring(0, tampered.length() - 1) + (last == 'A' ? 'B' : 'A');
+        String expiring = service.sign("ABCD");
+
+        // Act
+        boolean wrongResult = service.verify(wrong, "ABCE");
+        boolean tamperedResult = service.verify(tampered, "ABCD");
+        now.addAndGet(Duration.ofMinutes(3).toMillis());
+        boolean expiredResult = service.verify(expiring, "ABCD");
+
+        // Assert
+        assertThat(wrongResult).isFalse();
+        assertThat(tamperedResult).isFalse();
+        assertThat(expiredResult).isFalse();
+        assertThat(service.getExpiredCount()).isEqualTo(1);
+        assertThat(service.getForgedCount()).isZero();
+        assertThat(service.verify("not-a-token", "ABCD")).isFalse();
+    }
+
+    @Test
+    @DisplayName("大量伪造的令牌不应写入重放过滤器，有效令牌仍可校验")
+    void forgedTokensShouldNotFillReplayFilter() {
+        // Arrange：过滤器按 1000 个令牌设计，伪造 10 万个头部合法、签名随机的令牌
+        CaptchaTokenService service = builder().build();
+        String valid = service.sign("ABCD");
+        Random random = new Random(1);
+        byte[] raw = new byte[54];
+        raw[0] = 2;
+        raw[1] = 1;
+        long expiry = now.get() + Duration.ofMinutes(1).toMillis();
+        for (int i = 0; i < 8; i++) {
+            raw[2 + i] = (byte) (expiry >>> (56 - 8 * i));
+        }
+
+        // Act
+        int accepted = 0;
+        for (int i = 0; i < 100_000; i++) {
+            byte[] tail = new byte[44];
+            random.nextBytes(tail);
+            System.arraycopy(tail, 0, raw, 10, tail.length);
+            if (service.verify(Base64.getUrlEncoder().withoutPadding().encodeToString(raw), "ABCD")) {
+                accepted++;
+            }
+        }
+        boolean validResult = service.verify(valid, "abcd");
+
+        // Assert
+        assertThat(accepted).isZero();
+        assertThat(validResult).isTrue();
+        assertThat(service.getForgedCount()).isEqualTo(100_000);
+        assertThat(service.getReplayedCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("轮换密钥后旧令牌仍可校验，退役后失效")
+    void rotatedKeysShouldVerifyUntilRetired() {
+        // Arrange
+        CaptchaTokenService service = builder().build();
+        String oldToken = service.sign("1234");
+        String olderToken = service.sign("1234");
+
+        // Act
+        service.rotateKey(2, SECRET_2);
+        String newToken = service.sign("1234");
+        boolean oldResult = service.verify(oldToken, "1234");
+        service.retireKey(1);
+
+        // Assert
+        assertThat(oldResult).isTrue();
+        assertThat(service.verify(olderToken, "1234")).isFalse();
+        assertThat(service.verify(newToken, "1234")).isTrue();
+        assertThatIllegalStateException().isThrownBy(() -> service.retireKey(2));
+    }
+
+    @Test
+    @DisplayName("密钥过短时应该抛出异常")
+    void shouldRejectShortSecret() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CaptchaTokenService.Builder().key(0, new byte[8]))
+                .withMessage("Secret must be at least 16 bytes.");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CaptchaTokenService.Builder().build());
+    }
+}
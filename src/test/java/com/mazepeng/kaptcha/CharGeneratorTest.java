@@ -2,6 +2,7 @@ package com.mazepeng.kaptcha;
 
 
 import com.mazepeng.kaptcha.generator.CharGenerator;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -50,4 +51,93 @@ class CharGeneratorTest {
                 .isThrownBy(() -> new CharGenerator(-1))
                 .withMessage("Length must be greater than 0.");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("排除易混淆字符后生成的文本不应包含这些字符")
+    void shouldNotGenerateExcludedCharacters() {
+        // Arrange
+        CharGenerator generator = new CharGenerator.Builder()
+                .length(8)
+                .excludeAmbiguous()
+                .build();
+
+        // Act
+        String text = new String(generator.generate(500));
+
+        // Assert
+        assertThat(text).hasSize(4000).doesNotContainPattern("[0Oo1lIi]");
+        assertThat(generator.getAlphabet()).hasSize(55);
+    }
+
+    @Test
+    @DisplayName("应支持非拉丁字符集，并去掉重复的字符")
+    void shouldSupportNonLatinAlphabet() {
+        // Arrange
+        CharGenerator generator = new CharGenerator.Builder()
+                .alphabet("天地玄黄宇宙洪荒天地")
+                .build();
+
+        // Act
+        String text = generator.generate().getAnswer();
+
+        // Assert
+        assertThat(generator.getAlphabet()).containsExactly('天', '地', '玄', '黄', '宇', '宙', '洪', '荒');
+        assertThat(text).hasSize(4).matches("[天地玄黄宇宙洪荒]+");
+    }
+
+    @Test
+    @DisplayName("每个字符应均匀分布")
+    void charactersShouldBeUniformlyDistributed() {
+        // Arrange：3 个字符的字符集，每个随机数拆出多个字符
+        CharGenerator generator = new CharGenerator.Builder()
+                .length(5)
+                .alphabet("abc")
+                .build();
+        int[] counts = new int[3];
+
+        // Act
+        for (char c : generator.generate(60000, new SeededRandomSource(42L))) {
+            counts[c - 'a']++;
+        }
+
+        // Assert：期望每个字符 100000 次，标准差约 258
+        for (int count : counts) {
+            assertThat(count).isBetween(98500, 101500);
+        }
+    }
+
+    @Test
+    @DisplayName("批量生成应写入缓冲区的指定位置，固定种子时结果可复现")
+    void bulkGenerationShouldFillBufferReproducibly() {
+        // Arrange
+        CharGenerator generator = new CharGenerator(4);
+        char[] buffer = new char[2 + 3 * 4];
+
+        // Act
+        generator.fill(buffer, 2, 3, new SeededRandomSource(7L));
+        char[] expected = generator.generate(3, new SeededRandomSource(7L));
+
+        // Assert
+        assertThat(buffer[0]).isEqualTo('\0');
+        assertThat(buffer[1]).isEqualTo('\0');
+        assertThat(new String(buffer, 2, 12)).isEqualTo(new String(expected)).matches("^[a-zA-Z0-9]+$");
+        assertThatThrownBy(() -> generator.fill(buffer, 3, 3, new SeededRandomSource(7L)))
+                .isInstanceOf(IndexOutOfBoundsException.class)
+                .hasMessage("Buffer is too small.");
+    }
+
+    @Test
+    @DisplayName("字符集过小或批量数量为负数时应该抛出异常")
+    void shouldRejectInvalidAlphabetAndCount() {
+        // Arrange, Act & Assert
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CharGenerator.Builder().alphabet("aab").exclude("b").build())
+                .withMessage("Alphabet must contain at least 2 characters.");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CharGenerator.Builder().alphabet("a\uD83D\uDE00"))
+                .withMessage("Alphabet must not contain surrogate characters.");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CharGenerator(4).generate(-1))
+                .withMessage("Count must not be negative.");
+    }
+}
@@ -0,0 +1,112 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.color.PaletteColorizer;
+import com.mazepeng.kaptcha.color.RandomColorizer;
+import com.mazepeng.kaptcha.interferer.BesselCurveInterferer;
+import com.mazepeng.kaptcha.interferer.LineInterferer;
+import com.mazepeng.kaptcha.interferer.NoiseInterferer;
+import com.mazepeng.kaptcha.interferer.WarpInterferer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Color;
+
+class ColorizerTest {
+
+    @Test
+    @DisplayName("随机颜色选择器的整数颜色应不透明且各分量小于150")
+    void randomColorizerShouldReturnOpaqueDarkRgb() {
+        // Arrange
+        RandomColorizer colorizer = new RandomColorizer();
+
+        // Act & Assert
+        for (int i = 0; i < 1000; i++) {
+            int rgb = colorizer.nextRgb();
+            assertThat(rgb >>> 24).isEqualTo(0xFF);
+            assertThat((rgb >> 16) & 0xFF).isLessThan(150);
+            assertThat((rgb >> 8) & 0xFF).isLessThan(150);
+            assertThat(rgb & 0xFF).isLessThan(150);
+        }
+    }
+
+    @Test
+    @DisplayName("对比度调色板中的每个颜色与背景的对比度都应达到要求")
+    void contrastingPaletteShouldKeepContrastAgainstBackground() {
+        // Arrange
+        Color background = new Color(0xF0F0F0);
+
+        // Act
+        PaletteColorizer colorizer = PaletteColorizer.contrasting(background, 32, 4.5);
+
+        // Assert
+        assertThat(colorizer.size()).isEqualTo(32);
+        for (int i = 0; i < 500; i++) {
+            assertThat(PaletteColorizer.contrast(colorizer.nextRgb(), background.getRGB())).isGreaterThanOrEqualTo(4.5);
+        }
+        assertThat(PaletteColorizer.contrast(0x000000, 0xFFFFFF)).isCloseTo(21.0, within(0.01));
+    }
+
+    @Test
+    @DisplayName("调色板颜色选择器应复用预先创建的Color对象")
+    void paletteColorizerShouldReuseColors() {
+        // Arrange
+        PaletteColorizer colorizer = new PaletteColorizer(0x123456);
+
+        // Act
+        Color first = colorizer.nextColor();
+        Color second = colorizer.nextColor();
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(colorizer.nextRgb()).isEqualTo(0xFF123456);
+        assertThat(first.getRGB()).isEqualTo(0xFF123456);
+    }
+
+    @Test
+    @DisplayName("无法满足的对比度或空调色板应抛出异常")
+    void invalidPaletteShouldThrow() {
+        // Act & Assert
+        assertThatThrownBy(PaletteColorizer::new)
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PaletteColorizer.contrasting(Color.GRAY, 4, 21))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("contrast");
+    }
+
+    @Test
+    @DisplayName("干扰器应使用指定的颜色选择器")
+    void interferersShouldUseColorizer() {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .interferer(new NoiseInterferer(5f, new PaletteColorizer(0xFF0000)))
+                .build();
+        CaptchaProducer lines = new CaptchaProducer.Builder()
+                .interferer(new LineInterferer(5, new PaletteColorizer(0x00FF00)))
+                .build();
+
+        // Act
+        Captcha captcha = producer.nextCaptcha();
+
+        // Assert
+        boolean red = false;
+        for (int y = 0; y < captcha.getImage().getHeight() && !red; y++) {
+            for (int x = 0; x < captcha.getImage().getWidth() && !red; x++) {
+                int rgb = captcha.getImage().getRGB(x, y);
+                red = ((rgb >> 16) & 0xFF) > 200 && ((rgb >> 8) & 0xFF) < 150;
+            }
+        }
+        assertThat(red).isTrue();
+        assertThat(lines.nextCaptcha().getImage()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("干扰器的颜色选择器为null时应在构造时抛出异常")
+    void interferersShouldRejectNullColorizer() {
+        // Act & Assert
+        assertThatThrownBy(() -> new LineInterferer(5, null)).isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> new BesselCurveInterferer(2, null)).isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> new WarpInterferer(3, 1.8f, null)).isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> new NoiseInterferer(0.7f, null)).isInstanceOf(NullPointerException.class);
+    }
+}
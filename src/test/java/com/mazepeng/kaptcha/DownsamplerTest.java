@@ -0,0 +1,71 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.raster.Downsampler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+
+class DownsamplerTest {
+
+    @Test
+    @DisplayName("每个输出像素应为对应像素块的平均值")
+    void boxShouldAverageEachBlock() {
+        // Arrange：6x3 画布，左边 3x3 块全白，右边 3x3 块只有 3 个黑色像素
+        int[] src = new int[6 * 3];
+        Arrays.fill(src, 0xFFFFFFFF);
+        src[3] = 0xFF000000;
+        src[6 + 4] = 0xFF000000;
+        src[12 + 5] = 0xFF000000;
+        int[] dst = new int[2];
+
+        // Act
+        Downsampler.box(src, 0, 6, dst, 0, 2, 2, 1, 3);
+
+        // Assert
+        assertThat(dst[0]).isEqualTo(0xFFFFFF);
+        assertThat(dst[1]).isEqualTo(0xAAAAAA);
+    }
+
+    @Test
+    @DisplayName("半透明像素应按alpha预乘，等同于画到黑色背景上")
+    void boxShouldPremultiplyTranslucentPixels() {
+        // Arrange
+        int[] src = {0x80FF0000, 0x00FFFFFF, 0xFF0000FF, 0xFF0000FF};
+        int[] dst = new int[1];
+
+        // Act
+        Downsampler.box(src, 0, 2, dst, 0, 1, 1, 1, 2);
+
+        // Assert：红色 128 / 4 = 32，蓝色 510 / 4 ≈ 128
+        assertThat((dst[0] >> 16) & 0xFF).isEqualTo(32);
+        assertThat((dst[0] >> 8) & 0xFF).isZero();
+        assertThat(dst[0] & 0xFF).isEqualTo(128);
+    }
+
+    @Test
+    @DisplayName("应支持画布和输出位于更大数组中的一块区域")
+    void boxShouldHonorOffsetsAndScanlines() {
+        // Arrange：4x4 数组中右下角 2x2 的区域是画布
+        int[] src = new int[16];
+        Arrays.fill(src, 0xFF000000);
+        src[10] = src[11] = src[14] = src[15] = 0xFF204060;
+        int[] dst = {-1, -1, -1};
+
+        // Act
+        Downsampler.box(src, 10, 4, dst, 1, 1, 1, 1, 2);
+
+        // Assert
+        assertThat(dst).containsExactly(-1, 0x204060, -1);
+    }
+
+    @Test
+    @DisplayName("缩小倍数超出范围时应抛出异常")
+    void invalidFactorShouldBeRejected() {
+        // Act & Assert
+        assertThatThrownBy(() -> Downsampler.box(new int[1], 0, 1, new int[1], 0, 1, 1, 1, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Factor must be between 1 and 4.");
+    }
+}
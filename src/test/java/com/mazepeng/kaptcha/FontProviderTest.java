@@ -0,0 +1,159 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IFontProvider;
+import com.mazepeng.kaptcha.api.ScaledFont;
+import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
+import com.mazepeng.kaptcha.font.DefaultFontProvider;
+import com.mazepeng.kaptcha.font.FontRegistry;
+import com.mazepeng.kaptcha.font.GlyphCache;
+import com.mazepeng.kaptcha.font.RandomFontProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Font;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class FontProviderTest {
+
+    @Test
+    @DisplayName("默认字体提供器应复用同一个派生字体，字宽与FontMetrics一致")
+    void defaultProviderShouldReuseScaledFont() {
+        // Arrange
+        DefaultFontProvider provider = new DefaultFontProvider(30);
+
+        // Act
+        ScaledFont first = provider.getScaledFont(3);
+        ScaledFont second = provider.getScaledFont(3);
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(provider.getFont()).isSameAs(provider.getFont());
+        assertThat(first.getFont().getSize()).isEqualTo(90);
+        for (char c = 'A'; c <= 'Z'; c++) {
+            assertThat(first.charWidth(c)).isEqualTo(first.getMetrics().charWidth(c));
+        }
+    }
+
+    @Test
+    @DisplayName("随机字体提供器返回的字体应已派生为粗体和超采样字号")
+    void randomProviderShouldReturnPreDerivedFonts() {
+        // Arrange
+        RandomFontProvider provider = new RandomFontProvider(24);
+
+        // Act & Assert
+        for (int i = 0; i < 20; i++) {
+            Font font = provider.getScaledFont(2).getFont();
+            assertThat(font.isBold()).isTrue();
+            assertThat(font.getSize()).isEqualTo(48);
+        }
+    }
+
+    @Test
+    @DisplayName("只实现getFont的自定义提供器应使用共享缓存")
+    void customProviderShouldUseSharedCache() {
+        // Arrange
+        Font font = new Font(Font.SERIF, Font.PLAIN, 20);
+        IFontProvider provider = () -> font;
+
+        // Act
+        ScaledFont scaled = provider.getScaledFont(3);
+
+        // Assert
+        assertThat(provider.getScaledFont(3)).isSameAs(scaled);
+        assertThat(scaled.getFont().getSize()).isEqualTo(60);
+        assertThat(scaled.getScale()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("字体注册表应只解析一次，并在多次调用之间共享同一批字体")
+    void registryShouldShareParsedFonts() {
+        // Arrange
+        FontRegistry registry = FontRegistry.getShared();
+
+        // Act
+        List<Font> first = registry.getFonts(FontRegistry.DEFAULT_LOCATION);
+        List<Font> second = registry.preload(FontRegistry.DEFAULT_LOCATION).join();
+
+        // Assert
+        assertThat(first).hasSize(3);
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("字体注册表应能从文件系统目录加载字体，同一个文件只解析一次")
+    void registryShouldLoadFontsFromDirectory(@TempDir Path dir) throws IOException {
+        // Arrange
+        try (InputStream is = getClass().getResourceAsStream("/fonts/Ewert-Regular.ttf")) {
+            Files.copy(is, dir.resolve("Ewert-Regular.ttf"));
+        }
+        Files.write(dir.resolve("broken.ttf"), new byte[]{1, 2, 3});
+        FontRegistry registry = new FontRegistry(ForkJoinPool.commonPool());
+
+        // Act
+        List<Font> fonts = registry.getFonts(dir);
+        List<Font> again = registry.getFonts(dir.resolve(".").resolve("..").resolve(dir.getFileName()));
+        RandomFontProvider provider = new RandomFontProvider(20, fonts);
+
+        // Assert
+        assertThat(fonts).hasSize(1);
+        assertThat(again).isSameAs(fonts);
+        assertThat(provider.getFont().getFamily()).isEqualTo(fonts.get(0).getFamily());
+    }
+
+    @Test
+    @DisplayName("字体列表应按文件名排序，与目录的遍历顺序无关")
+    void registryShouldOrderFontsByFileName(@TempDir Path dir) throws IOException {
+        // Arrange：文件名的顺序与创建顺序、字体名称的顺序都不同
+        String[][] files = {{"c.ttf", "Ewert-Regular.ttf"}, {"a.ttf", "RubikBurned-Regular.ttf"},
+                {"b.ttf", "Kablammo-Regular-VariableFont_MORF.ttf"}};
+        for (String[] file : files) {
+            try (InputStream is = getClass().getResourceAsStream("/fonts/" + file[1])) {
+                Files.copy(is, dir.resolve(file[0]));
+            }
+        }
+        FontRegistry registry = new FontRegistry(ForkJoinPool.commonPool());
+
+        // Act
+        List<Font> fromDirectory = registry.getFonts(dir);
+        List<Font> fromClasspath = registry.getFonts(FontRegistry.DEFAULT_LOCATION);
+
+        // Assert
+        assertThat(fromDirectory).extracting(Font::getFontName)
+                .containsExactlyElementsOf(names(fromClasspath, 2, 1, 0));
+    }
+
+    private static List<String> names(List<Font> fonts, int... order) {
+        List<String> names = new ArrayList<>();
+        for (int i : order) {
+            names.add(fonts.get(i).getFontName());
+        }
+        return names;
+    }
+
+    @Test
+    @DisplayName("字体目录不存在时应该抛出异常")
+    void registryShouldRejectMissingLocation() {
+        assertThatExceptionOfType(CaptchaGenerationException.class)
+                .isThrownBy(() -> new FontRegistry(ForkJoinPool.commonPool()).getFonts("/no-such-fonts"));
+    }
+
+    @Test
+    @DisplayName("需要复杂排版的文本不应使用字形缓存")
+    void glyphCacheShouldOnlySupportSimpleText() {
+        assertThat(GlyphCache.supports("aB3x")).isTrue();
+        assertThat(GlyphCache.supports("天地玄黄")).isTrue();
+        assertThat(GlyphCache.supports("12 + 7 = ?")).isTrue();
+        assertThat(GlyphCache.supports("\u0645\u0631\u062D\u0628\u0627")).isFalse(); // 阿拉伯文
+        assertThat(GlyphCache.supports("\u0928\u092E\u0938\u094D\u0924\u0947")).isFalse(); // 天城文
+        assertThat(GlyphCache.supports("e\u0301")).isFalse(); // 组合重音符
+        assertThat(GlyphCache.supports("a\uD83D\uDE00")).isFalse(); // 代理对
+    }
+}
@@ -0,0 +1,103 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.font.GlyphCache;
+import com.mazepeng.kaptcha.generator.CharGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+
+class GlyphCacheTest {
+
+    @Test
+    @DisplayName("使用字形缓存绘制的文字与drawString相比，每个通道最多相差1")
+    void cachedTextShouldMatchDrawString() {
+        // Arrange
+        CaptchaProducer cached = new CaptchaProducer.Builder()
+                .glyphCache(new GlyphCache(8, 256))
+                .build();
+        CaptchaProducer direct = new CaptchaProducer.Builder()
+                .glyphCache(null)
+                .build();
+
+        for (long seed = 0; seed < 20; seed++) {
+            // Act
+            Captcha a = cached.nextCaptcha(seed);
+            Captcha b = direct.nextCaptcha(seed);
+
+            // Assert
+            assertThat(a.getText()).isEqualTo(b.getText());
+            assertThat(maxChannelDifference(a.getImage(), b.getImage())).isLessThanOrEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("字形缓存应限制字体数量和每个字体的字形数量")
+    void cacheShouldBeBounded() {
+        // Arrange
+        GlyphCache cache = new GlyphCache(2, 3);
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, 40);
+
+        // Act
+        GlyphCache.GlyphSet set = cache.forFont(font);
+        GlyphCache.Glyph a = set.get('a');
+        set.get('b');
+        set.get('天');
+        GlyphCache.Glyph full = set.get('d');
+        cache.forFont(font.deriveFont(41f));
+        cache.forFont(font.deriveFont(42f));
+
+        // Assert：字形表满了之后新字符返回 null，已缓存的字符仍然可用
+        assertThat(a).isNotNull();
+        assertThat(set.get('a')).isSameAs(a);
+        assertThat(set.get('天')).isNotNull();
+        assertThat(full).isNull();
+        assertThat(set.size()).isEqualTo(3);
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("字形表已满时应回退为drawString，结果与不使用缓存时完全一致")
+    void fullGlyphSetShouldFallBackToDrawString() {
+        // Arrange：每个字体只能缓存 1 个字形，4 个字符的文字总有字符没有缓存
+        CaptchaProducer bounded = new CaptchaProducer.Builder()
+                .generator(new CharGenerator.Builder().alphabet("ABCD").build())
+                .glyphCache(new GlyphCache(8, 1))
+                .build();
+        CaptchaProducer direct = new CaptchaProducer.Builder()
+                .generator(new CharGenerator.Builder().alphabet("ABCD").build())
+                .glyphCache(null)
+                .build();
+
+        for (long seed = 0; seed < 5; seed++) {
+            // Act
+            Captcha a = bounded.nextCaptcha(seed);
+            Captcha b = direct.nextCaptcha(seed);
+            // 只有一种字符时它可能已经被缓存，不会走回退路径
+            if (a.getText().chars().distinct().count() < 2) {
+                continue;
+            }
+
+            // Assert
+            assertThat(maxChannelDifference(a.getImage(), b.getImage())).isZero();
+        }
+    }
+
+    private static int maxChannelDifference(BufferedImage a, BufferedImage b) {
+        assertThat(a.getWidth()).isEqualTo(b.getWidth());
+        assertThat(a.getHeight()).isEqualTo(b.getHeight());
+        int max = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    max = Math.max(max, Math.abs(((p >> shift) & 0xFF) - ((q >> shift) & 0xFF)));
+                }
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,168 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IMetricsListener;
+import com.mazepeng.kaptcha.api.LoadLevel;
+import com.mazepeng.kaptcha.api.RenderStage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class LoadShedderTest {
+
+    private static final long BUDGET = Duration.ofMillis(5).toNanos();
+    private static final long HOLD = Duration.ofSeconds(10).toNanos();
+
+    @Test
+    @DisplayName("渲染耗时超过预算时应逐级降级，并通知监听器")
+    void shouldStepDownWhenLatencyExceedsBudget() {
+        // Arrange
+        List<String> changes = new ArrayList<>();
+        IMetricsListener listener = new IMetricsListener() {
+            @Override
+            public void onStage(RenderStage stage, long nanos) {
+            }
+
+            @Override
+            public void onLoadLevelChanged(LoadLevel previous, LoadLevel current) {
+                changes.add(previous + "->" + current);
+            }
+        };
+        LoadShedder shedder = new LoadShedder(BUDGET, 100, HOLD, new AtomicLong()::get, listener);
+
+        // Act
+        record(shedder, 7, BUDGET * 2);
+        LoadLevel beforeEnoughSamples = shedder.getLevel();
+        record(shedder, 1, BUDGET * 2);
+        LoadLevel afterFirstStep = shedder.getLevel();
+        record(shedder, 8, BUDGET * 2);
+
+        // Assert
+        assertThat(beforeEnoughSamples).isEqualTo(LoadLevel.NORMAL);
+        assertThat(afterFirstStep).isEqualTo(LoadLevel.REDUCED);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.MINIMAL);
+        assertThat(changes).containsExactly("NORMAL->REDUCED", "REDUCED->MINIMAL");
+    }
+
+    @Test
+    @DisplayName("排队数量超过上限时即使耗时正常也应降级")
+    void shouldStepDownWhenTooManyRequestsArePending() {
+        // Arrange
+        LoadShedder shedder = new LoadShedder(BUDGET, 4, HOLD, new AtomicLong()::get, null);
+        for (int i = 0; i < 12; i++) {
+            shedder.enter();
+        }
+
+        // Act：前 8 个请求结束时仍有 4 个以上的请求在排队
+        for (int i = 0; i < 8; i++) {
+            shedder.exit(BUDGET / 10);
+        }
+
+        // Assert
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.REDUCED);
+        assertThat(shedder.getPending()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("负载回落后应在保持时间之后才逐级恢复")
+    void shouldStepUpOnlyAfterHoldTime() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        LoadShedder shedder = new LoadShedder(BUDGET, 100, HOLD, now::get, null);
+        record(shedder, 8, BUDGET * 2);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.REDUCED);
+        // 降级后同样的负载在 REDUCED 下耗时减半，开销比为 2
+        record(shedder, 8, BUDGET);
+
+        // Act & Assert：耗时回落，但还没到保持时间
+        now.addAndGet(HOLD / 2);
+        record(shedder, 20, BUDGET / 10);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.REDUCED);
+
+        // 按开销比估算的 NORMAL 耗时只低于预算但没有低于一半，超过保持时间也不恢复
+        record(shedder, 40, BUDGET * 3 / 8);
+        now.addAndGet(HOLD);
+        record(shedder, 40, BUDGET * 3 / 8);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.REDUCED);
+
+        record(shedder, 40, BUDGET / 10);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.NORMAL);
+    }
+
+    @Test
+    @DisplayName("降级后耗时低于预算一半只是因为档位更便宜时，不应在档位之间来回切换")
+    void shouldNotFlapWhenCheaperLevelHidesOverload() {
+        // Arrange：NORMAL 的开销是 REDUCED 的 2.25 倍，负载使 NORMAL 略超预算、REDUCED 低于预算的一半
+        AtomicLong now = new AtomicLong();
+        LoadShedder shedder = new LoadShedder(BUDGET, 100, HOLD, now::get, null);
+        double[] cost = {1.0, 1 / 2.25, 0.2};
+        long normal = BUDGET * 11 / 10;
+
+        // Act：模拟 10 个保持时间，每个请求间隔 1 毫秒
+        int changes = run(shedder, now, cost, normal, HOLD * 10);
+        LoadLevel overloaded = shedder.getLevel();
+        // 负载下降到 NORMAL 只需要预算的 60%，仍高于恢复阈值
+        run(shedder, now, cost, BUDGET * 6 / 10, HOLD * 3);
+
+        // Assert
+        assertThat(overloaded).isEqualTo(LoadLevel.REDUCED);
+        assertThat(changes).isEqualTo(1);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.REDUCED);
+        run(shedder, now, cost, BUDGET * 2 / 10, HOLD * 2);
+        assertThat(shedder.getLevel()).isEqualTo(LoadLevel.NORMAL);
+    }
+
+    @Test
+    @DisplayName("启用自适应降级的生产者在超出预算后应降级并继续生成正确尺寸的验证码")
+    void producerShouldShedLoadAndKeepRendering() {
+        // Arrange：预算极小，每次渲染都会超出
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .width(150)
+                .height(50)
+                .loadShedding(Duration.ofNanos(1), 100)
+                .build();
+        assertThat(producer.getLoadLevel()).isEqualTo(LoadLevel.NORMAL);
+
+        // Act
+        Captcha captcha = null;
+        for (int i = 0; i < 20; i++) {
+            captcha = producer.nextCaptcha();
+        }
+
+        // Assert
+        assertThat(producer.getLoadLevel()).isEqualTo(LoadLevel.MINIMAL);
+        assertThat(captcha.getText()).hasSize(4);
+        assertThat(captcha.getImage().getWidth()).isEqualTo(150);
+        assertThat(captcha.getImage().getHeight()).isEqualTo(50);
+        assertThat(producer.nextCaptchas(3)).hasSize(3);
+    }
+
+    /**
+     * 按档位相关的开销模拟请求，返回档位变化的次数
+     * @param normal 当前负载下 NORMAL 档位的耗时
+     */
+    private static int run(LoadShedder shedder, AtomicLong now, double[] cost, long normal, long duration) {
+        int changes = 0;
+        LoadLevel level = shedder.getLevel();
+        for (long end = now.get() + duration; now.get() < end; now.addAndGet(Duration.ofMillis(1).toNanos())) {
+            shedder.enter();
+            shedder.exit((long) (normal * cost[shedder.getLevel().ordinal()]));
+            if (shedder.getLevel() != level) {
+                level = shedder.getLevel();
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    private static void record(LoadShedder shedder, int count, long nanos) {
+        for (int i = 0; i < count; i++) {
+            shedder.enter();
+            shedder.exit(nanos);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IFilter;
+import com.mazepeng.kaptcha.api.RenderStage;
+import com.mazepeng.kaptcha.exception.CaptchaGenerationException;
+import com.mazepeng.kaptcha.metrics.Histogram;
+import com.mazepeng.kaptcha.metrics.HistogramMetricsListener;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+class MetricsListenerTest {
+
+    @Test
+    @DisplayName("注册监听器后应记录每个阶段的耗时和PNG大小")
+    void listenerShouldReceiveStageTimingsAndSize() {
+        // Arrange
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .metricsListener(metrics)
+                .build();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            producer.nextCaptcha().toByteBuffer();
+        }
+
+        // Assert
+        for (RenderStage stage : RenderStage.values()) {
+            long expected = stage == RenderStage.FILTER ? 0 : 3;
+            assertThat(metrics.getStageHistogram(stage).getCount()).as(stage.name()).isEqualTo(expected);
+        }
+        assertThat(metrics.getRenderHistogram().getCount()).isEqualTo(3);
+        assertThat(metrics.getEncodedBytesHistogram().getValueAtPercentile(50)).isGreaterThan(100);
+    }
+
+    @Test
+    @DisplayName("阶段失败时应通知监听器")
+    void failureShouldBeReportedWithStage() {
+        // Arrange
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        IFilter broken = context -> {
+            throw new IllegalStateException("boom");
+        };
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .filter(broken)
+                .metricsListener(metrics)
+                .build();
+
+        // Act & Assert
+        assertThatExceptionOfType(CaptchaGenerationException.class).isThrownBy(producer::nextCaptcha);
+        assertThat(metrics.getFailureCount(RenderStage.FILTER)).isEqualTo(1);
+        assertThat(metrics.getFailureCount(RenderStage.TEXT)).isZero();
+    }
+
+    @Test
+    @DisplayName("直方图的分位数相对误差应在3%以内")
+    void histogramPercentilesShouldBeAccurate() {
+        // Arrange
+        Histogram histogram = new Histogram();
+
+        // Act
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+
+        // Assert
+        assertThat(histogram.getCount()).isEqualTo(100_000);
+        assertThat(histogram.getMax()).isEqualTo(100_000_000L);
+        assertThat(histogram.getValueAtPercentile(50)).isCloseTo(50_000_000L, withinPercentage(3));
+        assertThat(histogram.getValueAtPercentile(99)).isCloseTo(99_000_000L, withinPercentage(3));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100_000_000L);
+        assertThat(histogram.getMean()).isCloseTo(50_000_500.0, withinPercentage(0.01));
+    }
+}
@@ -0,0 +1,140 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.color.PaletteColorizer;
+import com.mazepeng.kaptcha.interferer.NoiseInterferer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+class NoiseInterfererTest {
+
+    private static final int WIDTH = 90;
+    private static final int HEIGHT = 30;
+    // 密度 5 时噪点数量 = 90 * 30 * 5 / 100
+    private static final int POINTS = 135;
+
+    @Test
+    @DisplayName("直接写像素时应在画布区域内画出不透明的噪点，且不修改区域外的像素")
+    void shouldWriteOpaquePixelsOnlyInsideTile() {
+        // Arrange：画布位于一个更大的数组中，上方留 2 行、左右各留 5 个像素的边框
+        int scanline = WIDTH + 10;
+        int offset = 2 * scanline + 5;
+        int border = 0x12345678;
+        int[] pixels = new int[scanline * (HEIGHT + 4)];
+        Arrays.fill(pixels, border);
+        for (int y = 0; y < HEIGHT; y++) {
+            Arrays.fill(pixels, offset + y * scanline, offset + y * scanline + WIDTH, 0);
+        }
+
+        // Act
+        new NoiseInterferer(5f).draw(new RenderContext(null, WIDTH, HEIGHT, 3, pixels, offset, scanline,
+                new SeededRandomSource(42)));
+
+        // Assert：噪点可能落在同一个位置，数量不超过 POINTS，但不应少太多
+        int painted = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            int row = i / scanline;
+            int col = i % scanline;
+            boolean inside = row >= 2 && row < 2 + HEIGHT && col >= 5 && col < 5 + WIDTH;
+            if (!inside) {
+                assertThat(pixels[i]).isEqualTo(border);
+            } else if (pixels[i] != 0) {
+                assertThat(pixels[i] >>> 24).isEqualTo(0xFF);
+                painted++;
+            }
+        }
+        assertThat(painted).isBetween(POINTS * 9 / 10, POINTS);
+    }
+
+    @Test
+    @DisplayName("画布不支持直接访问像素时应回退为Graphics2D画点")
+    void shouldFallBackToGraphicsWithoutPixels() {
+        // Arrange
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+
+        // Act
+        try {
+            new NoiseInterferer(5f).draw(new RenderContext(g, WIDTH, HEIGHT, 3, null, 0, WIDTH,
+                    new SeededRandomSource(42)));
+        } finally {
+            g.dispose();
+        }
+
+        // Assert
+        int painted = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int argb = image.getRGB(x, y);
+                if (argb != 0) {
+                    assertThat(argb >>> 24).isEqualTo(0xFF);
+                    painted++;
+                }
+            }
+        }
+        assertThat(painted).isBetween(POINTS * 9 / 10, POINTS);
+    }
+
+    @Test
+    @DisplayName("半透明的噪点颜色应与原有像素混合，结果与Graphics2D画点一致")
+    void translucentColorShouldBlendLikeGraphics() {
+        // Arrange：白色背景，噪点为半透明的红色
+        NoiseInterferer noise = new NoiseInterferer(5f, new PaletteColorizer(0x80FF0000));
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+
+        // Act
+        noise.draw(new RenderContext(null, WIDTH, HEIGHT, 3, pixels, 0, WIDTH, new SeededRandomSource(42)));
+        try {
+            noise.draw(new RenderContext(g, WIDTH, HEIGHT, 3, null, 0, WIDTH, new SeededRandomSource(42)));
+        } finally {
+            g.dispose();
+        }
+
+        // Assert：画了噪点的像素应是不透明的浅红色，而不是半透明的红色；
+        // 落在同一位置的噪点会叠加混合，颜色更深，只要求大部分像素与 Graphics2D 的结果一致
+        int expected = pink(image);
+        assertThat(expected).isNotZero();
+        int painted = 0;
+        int matched = 0;
+        for (int argb : pixels) {
+            if (argb != 0xFFFFFFFF) {
+                assertThat(argb >>> 24).isEqualTo(0xFF);
+                assertThat((argb >> 16) & 0xFF).isEqualTo(0xFF);
+                assertThat((argb >> 8) & 0xFF).isEqualTo(argb & 0xFF).isLessThanOrEqualTo((expected & 0xFF) + 1);
+                painted++;
+                if (Math.abs((argb & 0xFF) - (expected & 0xFF)) <= 1) {
+                    matched++;
+                }
+            }
+        }
+        assertThat(painted).isBetween(POINTS * 9 / 10, POINTS);
+        assertThat(matched).isGreaterThanOrEqualTo(POINTS * 8 / 10);
+    }
+
+    /**
+     * @return Graphics2D 画出的任意一个噪点的颜色，没有噪点时返回 0
+     */
+    private static int pink(BufferedImage image) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int argb = image.getRGB(x, y);
+                if (argb != 0xFFFFFFFF) {
+                    return argb;
+                }
+            }
+        }
+        return 0;
+    }
+}
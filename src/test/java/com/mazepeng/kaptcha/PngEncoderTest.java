@@ -0,0 +1,100 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.encoder.PngEncoder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import static org.assertj.core.api.Assertions.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+class PngEncoderTest {
+
+    // IHDR 中颜色类型字段在文件中的位置：签名 8 + 长度 4 + 类型 4 + 宽高 8 + 位深 1
+    private static final int COLOR_TYPE_OFFSET = 25;
+    private static final int BIT_DEPTH_OFFSET = 24;
+
+    private static BufferedImage decode(byte[] png) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertThat(actual.getRGB(x, y)).as("pixel (%d, %d)", x, y).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PngEncoder.Filter.class)
+    @DisplayName("每种过滤方式编码的真彩色验证码都应能被无损解码")
+    void everyFilterShouldRoundTripTrueColorCaptcha(PngEncoder.Filter filter) throws IOException {
+        // Arrange
+        PngEncoder encoder = new PngEncoder(6, filter, false);
+        BufferedImage image = new CaptchaProducer.Builder().build().nextCaptcha().getImage();
+
+        // Act
+        byte[] png = encoder.encode(image);
+
+        // Assert
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 2);
+        assertSamePixels(image, decode(png));
+    }
+
+    @Test
+    @DisplayName("颜色数不超过256时应输出调色板图片")
+    void fewColorsShouldUsePalette() throws IOException {
+        // Arrange
+        BufferedImage image = new BufferedImage(37, 11, BufferedImage.TYPE_INT_RGB);
+        int[] colors = {0xFFFFFF, 0x102030, 0xFF0000, 0x00FF00, 0x0000FF};
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, colors[(x * 7 + y) % colors.length]);
+            }
+        }
+
+        // Act
+        byte[] png = new PngEncoder().encode(image);
+
+        // Assert
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 3);
+        assertThat(png[BIT_DEPTH_OFFSET]).isEqualTo((byte) 4);
+        assertSamePixels(image, decode(png));
+    }
+
+    @Test
+    @DisplayName("带透明通道的图片应保留alpha")
+    void translucentImageShouldKeepAlpha() throws IOException {
+        // Arrange
+        BufferedImage image = new BufferedImage(64, 16, BufferedImage.TYPE_INT_ARGB);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        // Act
+        byte[] png = new PngEncoder(1, PngEncoder.Filter.PAETH, true).encode(image);
+
+        // Assert
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 6);
+        assertSamePixels(image, decode(png));
+    }
+
+    @Test
+    @DisplayName("无效的压缩级别应该抛出异常")
+    void shouldRejectInvalidCompressionLevel() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new PngEncoder(10, PngEncoder.Filter.NONE, false))
+                .withMessage("Compression level must be between 0 and 9.");
+    }
+}
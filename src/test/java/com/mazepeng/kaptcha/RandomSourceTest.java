@@ -0,0 +1,84 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.IRandomSource;
+import com.mazepeng.kaptcha.filter.RippleFilter;
+import com.mazepeng.kaptcha.font.RandomFontProvider;
+import com.mazepeng.kaptcha.generator.ArithmeticGenerator;
+import com.mazepeng.kaptcha.interferer.*;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+class RandomSourceTest {
+
+    private static CaptchaProducer.Builder fullBuilder() {
+        return new CaptchaProducer.Builder()
+                .generator(new ArithmeticGenerator())
+                .fontProvider(new RandomFontProvider(30))
+                .interferer(new CompositeInterferer(new LineInterferer(5), new BesselCurveInterferer(2),
+                        new WarpInterferer(), new NoiseInterferer()))
+                .filter(new RippleFilter());
+    }
+
+    @Test
+    @DisplayName("相同的种子应生成逐字节相同的验证码")
+    void sameSeedShouldProduceIdenticalCaptcha() {
+        // Arrange
+        CaptchaProducer first = fullBuilder().build();
+        CaptchaProducer second = fullBuilder().build();
+
+        // Act
+        Captcha a = first.nextCaptcha(42L);
+        Captcha b = second.nextCaptcha(42L);
+        Captcha c = first.nextCaptcha(43L);
+
+        // Assert
+        assertThat(b.getText()).isEqualTo(a.getText());
+        assertThat(b.toBase64()).isEqualTo(a.toBase64());
+        assertThat(c.toBase64()).isNotEqualTo(a.toBase64());
+    }
+
+    @Test
+    @DisplayName("固定种子模式下批量生成与逐个生成的结果应一致")
+    void seededProducerShouldBeReproducible() {
+        // Arrange
+        CaptchaProducer batch = fullBuilder().seed(7L).build();
+        CaptchaProducer single = fullBuilder().seed(7L).build();
+
+        // Act
+        List<Captcha> captchas = batch.nextCaptchas(10);
+
+        // Assert
+        for (Captcha captcha : captchas) {
+            Captcha expected = single.nextCaptcha();
+            assertThat(captcha.getText()).isEqualTo(expected.getText());
+            assertThat(captcha.toBase64()).isEqualTo(expected.toBase64());
+        }
+    }
+
+    @Test
+    @DisplayName("固定种子的随机数来源应可复现且分布在范围内")
+    void seededRandomSourceShouldBeDeterministic() {
+        // Arrange
+        IRandomSource a = new SeededRandomSource(123L);
+        IRandomSource b = new SeededRandomSource(123L);
+        int[] histogram = new int[10];
+
+        // Act & Assert
+        for (int i = 0; i < 10_000; i++) {
+            int value = a.nextInt(10);
+            assertThat(b.nextInt(10)).isEqualTo(value);
+            histogram[value]++;
+            double d = a.nextDouble();
+            assertThat(d).isGreaterThanOrEqualTo(0).isLessThan(1);
+            assertThat(b.nextDouble()).isEqualTo(d);
+        }
+        for (int count : histogram) {
+            assertThat(count).isBetween(800, 1200);
+        }
+        assertThatThrownBy(() -> a.nextInt(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
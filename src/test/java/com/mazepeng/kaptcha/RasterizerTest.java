@@ -0,0 +1,130 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.interferer.BesselCurveInterferer;
+import com.mazepeng.kaptcha.interferer.CompositeInterferer;
+import com.mazepeng.kaptcha.interferer.LineInterferer;
+import com.mazepeng.kaptcha.interferer.WarpInterferer;
+import com.mazepeng.kaptcha.random.SeededRandomSource;
+import com.mazepeng.kaptcha.raster.Rasterizer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+class RasterizerTest {
+
+    @Test
+    @DisplayName("水平线应完整覆盖线宽内的像素，线外的像素保持不变")
+    void horizontalLineShouldCoverPixelsWithinLineWidth() {
+        // Arrange
+        int[] pixels = new int[20 * 10];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        Rasterizer rasterizer = new Rasterizer(pixels, 0, 20, 20, 10);
+
+        // Act
+        rasterizer.drawLine(4, 5, 16, 5, 2f, 0xFF000000);
+
+        // Assert
+        assertThat(pixels[4 * 20 + 10]).isEqualTo(0xFF000000);
+        assertThat(pixels[5 * 20 + 10]).isEqualTo(0xFF000000);
+        assertThat(pixels[2 * 20 + 10]).isEqualTo(0xFFFFFFFF);
+        assertThat(pixels[7 * 20 + 10]).isEqualTo(0xFFFFFFFF);
+        assertThat(pixels[5 * 20 + 1]).isEqualTo(0xFFFFFFFF);
+    }
+
+    @Test
+    @DisplayName("填充轮廓时边缘像素应按覆盖率混合")
+    void fillShouldBlendPartiallyCoveredPixels() {
+        // Arrange
+        int[] pixels = new int[10 * 10];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        Rasterizer rasterizer = new Rasterizer(pixels, 0, 10, 10, 10);
+
+        // Act：矩形左右两侧各覆盖半个像素
+        rasterizer.fill(new Rectangle2D.Double(2.5, 2, 4, 4), 0xFF000000);
+
+        // Assert
+        assertThat(pixels[3 * 10 + 4]).isEqualTo(0xFF000000);
+        int edge = pixels[3 * 10 + 2] & 0xFF;
+        assertThat(edge).isBetween(120, 135);
+        assertThat(pixels[3 * 10 + 7]).isEqualTo(0xFFFFFFFF);
+        assertThat(pixels[1 * 10 + 4]).isEqualTo(0xFFFFFFFF);
+    }
+
+    @Test
+    @DisplayName("超出画布的线条应被裁剪，不写入画布以外的像素")
+    void shapesOutsideCanvasShouldBeClipped() {
+        // Arrange：画布是像素数组中间的一块区域
+        int[] pixels = new int[30 * 30];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        Rasterizer rasterizer = new Rasterizer(pixels, 10 * 30 + 10, 30, 10, 10);
+
+        // Act
+        rasterizer.drawLine(-20, -20, 40, 40, 3f, 0xFF000000);
+        rasterizer.fill(new Rectangle(-5, -5, 40, 40), 0xFF0000FF);
+
+        // Assert
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 30; x++) {
+                boolean inside = x >= 10 && x < 20 && y >= 10 && y < 20;
+                assertThat(pixels[y * 30 + x]).isEqualTo(inside ? 0xFF0000FF : 0xFFFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("软件渲染后端应生成正确尺寸的图片，并且固定种子下结果可以复现")
+    void softwareBackendShouldRenderReproducibleImages() {
+        // Arrange
+        CaptchaProducer.Builder builder = new CaptchaProducer.Builder()
+                .width(150).height(50)
+                .renderBackend(RenderBackend.SOFTWARE)
+                .interferer(new CompositeInterferer(new LineInterferer(5), new BesselCurveInterferer(2), new WarpInterferer(2, 2f)))
+                .glyphCache(null)
+                .seed(42L);
+
+        // Act
+        Captcha first = builder.build().nextCaptcha();
+        Captcha second = builder.build().nextCaptcha();
+
+        // Assert
+        BufferedImage image = first.getImage();
+        assertThat(image.getWidth()).isEqualTo(150);
+        assertThat(image.getHeight()).isEqualTo(50);
+        assertThat(first.getText()).isEqualTo(second.getText());
+        assertThat(pixels(image)).isEqualTo(pixels(second.getImage()));
+        assertThat(Arrays.stream(pixels(image)).filter(p -> (p & 0xFFFFFF) != 0xFFFFFF).count()).isGreaterThan(100);
+    }
+
+    @Test
+    @DisplayName("软件渲染后端的拼图渲染结果应与逐张渲染相同")
+    void softwareBackendSheetShouldMatchSingleRendering() {
+        // Arrange
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .renderBackend(RenderBackend.SOFTWARE)
+                .seed(7L)
+                .build();
+
+        // Act
+        Captcha single = producer.nextCaptcha(SeededRandomSource.derive(7L, 0));
+        Captcha[] series = new CaptchaProducer.Builder()
+                .renderBackend(RenderBackend.SOFTWARE)
+                .seed(7L)
+                .build()
+                .renderSeries(3);
+
+        // Assert
+        assertThat(series).hasSize(3);
+        assertThat(series[0].getText()).isEqualTo(single.getText());
+        assertThat(pixels(series[0].getImage())).isEqualTo(pixels(single.getImage()));
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
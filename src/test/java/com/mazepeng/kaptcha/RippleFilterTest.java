@@ -0,0 +1,82 @@
+package com.mazepeng.kaptcha;
+
+import com.mazepeng.kaptcha.api.RenderContext;
+import com.mazepeng.kaptcha.filter.RippleFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ThreadLocalRandom;
+
+class RippleFilterTest {
+
+    private static int[] randomPixels(int n) {
+        int[] pixels = new int[n];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < n; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    @Test
+    @DisplayName("振幅为0时不应改变任何像素")
+    void zeroAmplitudeShouldKeepPixels() {
+        // Arrange
+        int[] pixels = randomPixels(90 * 30);
+        int[] original = pixels.clone();
+
+        // Act
+        new RippleFilter(0f, 2f, 1f).apply(new RenderContext(null, 90, 30, 3, pixels, 0, 90));
+
+        // Assert
+        assertThat(pixels).isEqualTo(original);
+    }
+
+    @Test
+    @DisplayName("应只修改画布区域内的像素")
+    void shouldDistortOnlyInsideCanvas() {
+        // Arrange：画布位于一个更大的数组中，左右各留 5 个像素的边框
+        int width = 90;
+        int height = 30;
+        int scanline = width + 10;
+        int[] pixels = randomPixels(scanline * height);
+        int[] original = pixels.clone();
+
+        // Act
+        new RippleFilter(3f, 2f, 1f).apply(new RenderContext(null, width, height, 3, pixels, 5, scanline));
+
+        // Assert
+        boolean changed = false;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < scanline; x++) {
+                int i = y * scanline + x;
+                boolean inside = x >= 5 && x < 5 + width;
+                if (!inside) {
+                    assertThat(pixels[i]).isEqualTo(original[i]);
+                }
+                changed |= inside && pixels[i] != original[i];
+            }
+        }
+        assertThat(changed).isTrue();
+    }
+
+    @Test
+    @DisplayName("大画布按行并行处理时也应正常生成验证码")
+    void largeCanvasShouldUseParallelPath() {
+        // Arrange：360x240 的 3 倍画布超过并行阈值
+        CaptchaProducer producer = new CaptchaProducer.Builder()
+                .width(360)
+                .height(240)
+                .filter(new RippleFilter())
+                .build();
+
+        // Act
+        BufferedImage image = producer.nextCaptcha().getImage();
+
+        // Assert
+        assertThat(image.getWidth()).isEqualTo(360);
+        assertThat(image.getHeight()).isEqualTo(240);
+    }
+}